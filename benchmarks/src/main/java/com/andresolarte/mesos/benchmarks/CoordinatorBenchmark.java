@@ -0,0 +1,66 @@
+package com.andresolarte.mesos.benchmarks;
+
+import com.andresolarte.mesos.framework.dto.Request;
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.logic.LargestProductCoordinator;
+import com.andresolarte.mesos.framework.logic.TaskPlanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The scheduler side of the job: cutting requests out of the input and folding results back in.
+ * The coordinator is planned for about a million requests and rebuilt for every iteration, so that
+ * ingestResult measures new results rather than dropped duplicates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CoordinatorBenchmark {
+
+    private LargestProductCoordinator coordinator;
+    private Result result;
+    private int taskCount;
+    private int nextRequest;
+    private int nextResult;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Inputs.quietLogging();
+        coordinator = new LargestProductCoordinator(13, new TaskPlanner(1000, 1, 1));
+        coordinator.setupTasks(Inputs.syntheticInput(1L << 30));
+        taskCount = coordinator.planTasks(1 << 20).getTaskCount();
+        result = new Result();
+        result.setTotal(23514624000L);
+        result.setDigitSequence("5576689664895");
+        nextRequest = 0;
+        nextResult = 0;
+    }
+
+    @Benchmark
+    public Request createRequest() {
+        Request request = coordinator.createRequest(nextRequest);
+        nextRequest = (nextRequest + 1) % taskCount;
+        return request;
+    }
+
+    @Benchmark
+    public boolean ingestResult() {
+        boolean ingested = coordinator.ingestResult(nextResult, 1, result);
+        nextResult = (nextResult + 1) % taskCount;
+        return ingested;
+    }
+}
@@ -0,0 +1,67 @@
+package com.andresolarte.mesos.benchmarks;
+
+import com.andresolarte.mesos.framework.dto.Request;
+import com.andresolarte.mesos.framework.job.JobTask;
+import com.andresolarte.mesos.framework.logic.WindowProductKernel;
+import com.andresolarte.mesos.framework.util.ByteStringUtils;
+import org.apache.mesos.Protos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The executor hot path: scanning a chunk for its best window, on its own and as a whole task
+ * (decode the request, scan, encode the result, send the status updates).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FinderBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    private int digitCount;
+
+    @Param({"4", "13", "19", "100", "500"})
+    private int window;
+
+    private byte[] digits;
+    private Protos.TaskInfo task;
+    private StubExecutorDriver driver;
+
+    @Setup
+    public void setUp() {
+        Inputs.quietLogging();
+        digits = Inputs.randomDigits(digitCount);
+        task = Protos.TaskInfo.newBuilder()
+                .setName("benchmark")
+                .setTaskId(Protos.TaskID.newBuilder().setValue("0"))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue("slave"))
+                .setData(ByteStringUtils.toByteString(new Request(digits, window)))
+                .build();
+        driver = new StubExecutorDriver();
+    }
+
+    @Benchmark
+    public int kernel() {
+        return WindowProductKernel.findBestWindow(digits, 0, digits.length - window + 1, window);
+    }
+
+    @Benchmark
+    public Protos.TaskStatus task() {
+        new JobTask(task, driver).run();
+        return driver.getLastStatus();
+    }
+}
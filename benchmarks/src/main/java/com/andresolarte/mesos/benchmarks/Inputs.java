@@ -0,0 +1,113 @@
+package com.andresolarte.mesos.benchmarks;
+
+import com.andresolarte.mesos.framework.input.DigitInput;
+import org.apache.mesos.Protos;
+
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared fixtures for the benchmarks.
+ */
+public final class Inputs {
+    //Held on to, a logger that is only weakly referenced loses its level
+    private static final Logger FRAMEWORK_LOGGER = Logger.getLogger("com.andresolarte");
+
+    private Inputs() {
+    }
+
+    /**
+     * Random digits with a fixed seed, so every run scans the same input.
+     */
+    public static byte[] randomDigits(int length) {
+        Random random = new Random(8);
+        byte[] digits = new byte[length];
+        for (int i = 0; i < length; i++) {
+            digits[i] = (byte) random.nextInt(10);
+        }
+        return digits;
+    }
+
+    /**
+     * An input of any length that generates its digits on the fly, so the coordinator can be planned for
+     * millions of requests without holding the digits.
+     */
+    public static DigitInput syntheticInput(final long length) {
+        return new DigitInput() {
+            @Override
+            public long length() {
+                return length;
+            }
+
+            @Override
+            public byte[] read(long offset, int count) {
+                byte[] digits = new byte[count];
+                for (int i = 0; i < count; i++) {
+                    digits[i] = (byte) (((offset + i) * 2654435761L >>> 7) % 10);
+                }
+                return digits;
+            }
+        };
+    }
+
+    /**
+     * Like {@link #syntheticInput(long)}, but only digits from 1 to 5 appear outside of a hot stretch of 1% of the
+     * input, an eighth of the way in. Most of the input can't hold the best window, which is what pruning is for.
+     */
+    public static DigitInput skewedInput(final long length) {
+        final long hotStart = length / 8;
+        final long hotEnd = hotStart + length / 100;
+        return new DigitInput() {
+            @Override
+            public long length() {
+                return length;
+            }
+
+            @Override
+            public byte[] read(long offset, int count) {
+                byte[] digits = new byte[count];
+                for (int i = 0; i < count; i++) {
+                    long index = offset + i;
+                    long hash = index * 0x9E3779B97F4A7C15L;
+                    hash = (hash ^ hash >>> 32) * 0xD6E8FEB86659FD93L;
+                    hash = (hash ^ hash >>> 32) >>> 1;
+                    digits[i] = (byte) (index >= hotStart && index < hotEnd ? hash % 10 : 1 + hash % 5);
+                }
+                return digits;
+            }
+        };
+    }
+
+    public static Protos.Offer offer(int index, double cpus, double mem) {
+        return Protos.Offer.newBuilder()
+                .setId(Protos.OfferID.newBuilder().setValue("offer-" + index))
+                .setFrameworkId(Protos.FrameworkID.newBuilder().setValue("benchmark"))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue("slave-" + index))
+                .setHostname("localhost")
+                .addResources(Protos.Resource.newBuilder()
+                        .setName("cpus")
+                        .setType(Protos.Value.Type.SCALAR)
+                        .setScalar(Protos.Value.Scalar.newBuilder().setValue(cpus)))
+                .addResources(Protos.Resource.newBuilder()
+                        .setName("mem")
+                        .setType(Protos.Value.Type.SCALAR)
+                        .setScalar(Protos.Value.Scalar.newBuilder().setValue(mem)))
+                .build();
+    }
+
+    public static Protos.ExecutorInfo executorInfo() {
+        return Protos.ExecutorInfo.newBuilder()
+                .setExecutorId(Protos.ExecutorID.newBuilder().setValue("default"))
+                .setCommand(Protos.CommandInfo.newBuilder().setValue("true"))
+                .setName("Benchmark Executor")
+                .build();
+    }
+
+    /**
+     * The framework logs every task at INFO, which would dominate the measurements.
+     */
+    public static void quietLogging() {
+        FRAMEWORK_LOGGER.setLevel(Level.WARNING);
+    }
+}
@@ -0,0 +1,47 @@
+package com.andresolarte.mesos.benchmarks;
+
+import com.andresolarte.mesos.framework.logic.ParallelWindowScan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of the fork/join scan of a large chunk from 1 to N threads. Only meaningful on a host with at least
+ * as many cores as the largest parallelism.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelScanBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    @Param({"64000000"})
+    private int digitCount;
+
+    private byte[] digits;
+
+    @Setup
+    public void setUp() {
+        digits = Inputs.randomDigits(digitCount);
+    }
+
+    @Benchmark
+    public int scan() {
+        return ParallelWindowScan.findBestWindow(digits, 0, digits.length - 12, 13, parallelism);
+    }
+}
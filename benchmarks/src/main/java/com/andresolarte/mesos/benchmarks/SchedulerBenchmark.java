@@ -0,0 +1,75 @@
+package com.andresolarte.mesos.benchmarks;
+
+import com.andresolarte.mesos.framework.TestScheduler;
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.util.ByteStringUtils;
+import com.google.protobuf.ByteString;
+import org.apache.mesos.Protos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One round of the scheduler loop against a stubbed driver: a 16 CPU offer comes in, the scheduler packs it with
+ * tasks, and every one of those tasks reports back TASK_FINISHED.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchedulerBenchmark {
+
+    private TestScheduler scheduler;
+    private StubSchedulerDriver driver;
+    private List<Protos.Offer> offers;
+    private ByteString resultData;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Inputs.quietLogging();
+        System.setProperty("largestproduct.windowsPerMillisecond", "1");
+        System.setProperty("largestproduct.minWindowsPerTask", "1");
+        Result result = new Result();
+        result.setTotal(23514624000L);
+        result.setDigitSequence("5576689664895");
+        resultData = ByteStringUtils.toByteString(result);
+        offers = Collections.singletonList(Inputs.offer(0, 16, 16 * 1024));
+        newJob();
+    }
+
+    private void newJob() {
+        driver = new StubSchedulerDriver();
+        scheduler = new TestScheduler(true, Inputs.executorInfo(), Inputs.syntheticInput(1L << 30), null);
+    }
+
+    @Benchmark
+    public int offerAndFinish() {
+        if (driver.isStopped()) {
+            newJob();
+        }
+        scheduler.resourceOffers(driver, offers);
+        List<Protos.TaskInfo> launched = driver.getLastLaunched();
+        for (Protos.TaskInfo task : launched) {
+            scheduler.statusUpdate(driver, Protos.TaskStatus.newBuilder()
+                    .setTaskId(task.getTaskId())
+                    .setState(Protos.TaskState.TASK_FINISHED)
+                    .setData(resultData)
+                    .build());
+        }
+        return launched.size();
+    }
+}
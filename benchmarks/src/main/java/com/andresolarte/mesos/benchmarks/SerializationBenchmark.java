@@ -0,0 +1,69 @@
+package com.andresolarte.mesos.benchmarks;
+
+import com.andresolarte.mesos.framework.dto.Request;
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.util.ByteStringUtils;
+import com.google.protobuf.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips of the task payloads through ByteStringUtils, with Java serialization as the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"20", "1000", "100000"})
+    private int digitCount;
+
+    private Request request;
+    private Result result;
+
+    @Setup
+    public void setUp() {
+        request = new Request(Inputs.randomDigits(digitCount), 13);
+        result = new Result();
+        result.setTotal(23514624000L);
+        result.setDigitSequence("5576689664895");
+    }
+
+    @Benchmark
+    public Request requestRoundTrip() {
+        ByteString bytes = ByteStringUtils.toByteString(request);
+        return ByteStringUtils.fromByteString(bytes);
+    }
+
+    @Benchmark
+    public Request requestRoundTripJavaSerialization() {
+        ByteString bytes = ByteString.copyFrom(ByteStringUtils.toBytes(request));
+        return ByteStringUtils.fromBytes(bytes.toByteArray());
+    }
+
+    @Benchmark
+    public Result resultRoundTrip() {
+        ByteString bytes = ByteStringUtils.toByteString(result);
+        return ByteStringUtils.fromByteString(bytes);
+    }
+
+    @Benchmark
+    public Result resultRoundTripJavaSerialization() {
+        ByteString bytes = ByteString.copyFrom(ByteStringUtils.toBytes(result));
+        return ByteStringUtils.fromBytes(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,57 @@
+package com.andresolarte.mesos.benchmarks;
+
+import org.apache.mesos.ExecutorDriver;
+import org.apache.mesos.Protos;
+
+/**
+ * Executor driver that doesn't talk to a slave. It keeps the last status update so benchmarks can consume it.
+ */
+public class StubExecutorDriver implements ExecutorDriver {
+    private Protos.TaskStatus lastStatus;
+    private int statusUpdates;
+
+    public Protos.TaskStatus getLastStatus() {
+        return lastStatus;
+    }
+
+    public int getStatusUpdates() {
+        return statusUpdates;
+    }
+
+    @Override
+    public Protos.Status start() {
+        return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status stop() {
+        return Protos.Status.DRIVER_STOPPED;
+    }
+
+    @Override
+    public Protos.Status abort() {
+        return Protos.Status.DRIVER_ABORTED;
+    }
+
+    @Override
+    public Protos.Status join() {
+        return Protos.Status.DRIVER_STOPPED;
+    }
+
+    @Override
+    public Protos.Status run() {
+        return Protos.Status.DRIVER_STOPPED;
+    }
+
+    @Override
+    public Protos.Status sendStatusUpdate(Protos.TaskStatus status) {
+        lastStatus = status;
+        statusUpdates++;
+        return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status sendFrameworkMessage(byte[] data) {
+        return Protos.Status.DRIVER_RUNNING;
+    }
+}
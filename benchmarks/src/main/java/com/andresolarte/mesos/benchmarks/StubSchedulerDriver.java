@@ -0,0 +1,157 @@
+package com.andresolarte.mesos.benchmarks;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.SchedulerDriver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Scheduler driver that doesn't talk to a master. It keeps the tasks launched by the last accepted offer so
+ * benchmarks can consume them, and counts the other calls.
+ */
+public class StubSchedulerDriver implements SchedulerDriver {
+    private final List<Protos.TaskInfo> lastLaunched = new ArrayList<>();
+    private int launchedTasks;
+    private int declinedOffers;
+    private int revives;
+    private boolean stopped;
+
+    public List<Protos.TaskInfo> getLastLaunched() {
+        return lastLaunched;
+    }
+
+    public int getLaunchedTasks() {
+        return launchedTasks;
+    }
+
+    public int getDeclinedOffers() {
+        return declinedOffers;
+    }
+
+    public int getRevives() {
+        return revives;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    @Override
+    public Protos.Status start() {
+        return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status stop(boolean failover) {
+        stopped = true;
+        return Protos.Status.DRIVER_STOPPED;
+    }
+
+    @Override
+    public Protos.Status stop() {
+        return stop(false);
+    }
+
+    @Override
+    public Protos.Status abort() {
+        stopped = true;
+        return Protos.Status.DRIVER_ABORTED;
+    }
+
+    @Override
+    public Protos.Status join() {
+        return Protos.Status.DRIVER_STOPPED;
+    }
+
+    @Override
+    public Protos.Status run() {
+        return Protos.Status.DRIVER_STOPPED;
+    }
+
+    @Override
+    public Protos.Status requestResources(Collection<Protos.Request> requests) {
+        return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status launchTasks(Collection<Protos.OfferID> offerIds, Collection<Protos.TaskInfo> tasks,
+                                     Protos.Filters filters) {
+        lastLaunched.clear();
+        lastLaunched.addAll(tasks);
+        launchedTasks += tasks.size();
+        return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status launchTasks(Collection<Protos.OfferID> offerIds, Collection<Protos.TaskInfo> tasks) {
+        return launchTasks(offerIds, tasks, null);
+    }
+
+    @Override
+    public Protos.Status launchTasks(Protos.OfferID offerId, Collection<Protos.TaskInfo> tasks,
+                                     Protos.Filters filters) {
+        return launchTasks((Collection<Protos.OfferID>) null, tasks, filters);
+    }
+
+    @Override
+    public Protos.Status launchTasks(Protos.OfferID offerId, Collection<Protos.TaskInfo> tasks) {
+        return launchTasks(offerId, tasks, null);
+    }
+
+    @Override
+    public Protos.Status killTask(Protos.TaskID taskId) {
+        return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status acceptOffers(Collection<Protos.OfferID> offerIds, Collection<Protos.Offer.Operation> operations,
+                                      Protos.Filters filters) {
+        lastLaunched.clear();
+        for (Protos.Offer.Operation operation : operations) {
+            if (operation.getType() == Protos.Offer.Operation.Type.LAUNCH) {
+                lastLaunched.addAll(operation.getLaunch().getTaskInfosList());
+            }
+        }
+        launchedTasks += lastLaunched.size();
+        return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status declineOffer(Protos.OfferID offerId, Protos.Filters filters) {
+        declinedOffers++;
+        return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status declineOffer(Protos.OfferID offerId) {
+        return declineOffer(offerId, null);
+    }
+
+    @Override
+    public Protos.Status reviveOffers() {
+        revives++;
+        return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status suppressOffers() {
+        return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status acknowledgeStatusUpdate(Protos.TaskStatus status) {
+        return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status sendFrameworkMessage(Protos.ExecutorID executorId, Protos.SlaveID slaveId, byte[] data) {
+        return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status reconcileTasks(Collection<Protos.TaskStatus> statuses) {
+        return Protos.Status.DRIVER_RUNNING;
+    }
+}
@@ -0,0 +1,187 @@
+package com.andresolarte.mesos.benchmarks.cluster;
+
+import org.apache.mesos.Executor;
+import org.apache.mesos.ExecutorDriver;
+import org.apache.mesos.Protos;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A virtual slave of the {@link LocalCluster}: a pool of cpus and mem, and the Executor that runs its tasks.
+ * Calls into the Executor are made from a single thread per agent, as the real executor driver does.
+ * Resource bookkeeping is done by the cluster, on its event loop.
+ */
+class LocalAgent {
+    private final LocalCluster cluster;
+    private final Protos.SlaveInfo slaveInfo;
+    private final Executor executor;
+    private final ExecutorService executorThread;
+    private final ExecutorDriver executorDriver = new AgentExecutorDriver();
+    private double freeCpus;
+    private double freeMem;
+    private long filteredUntil;
+    private boolean offered;
+    private boolean executorRegistered;
+
+    LocalAgent(LocalCluster cluster, int index, double cpus, double mem, List<Protos.Attribute> attributes,
+               Executor executor) {
+        this.cluster = cluster;
+        this.executor = executor;
+        this.freeCpus = cpus;
+        this.freeMem = mem;
+        this.slaveInfo = Protos.SlaveInfo.newBuilder()
+                .setId(Protos.SlaveID.newBuilder().setValue("agent-" + index))
+                .setHostname("agent-" + index)
+                .addAllAttributes(attributes)
+                .build();
+        this.executorThread = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, slaveInfo.getHostname());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    Protos.SlaveID getId() {
+        return slaveInfo.getId();
+    }
+
+    boolean canOffer(long now) {
+        return !offered && now >= filteredUntil && freeCpus > 0 && freeMem > 0;
+    }
+
+    Protos.Offer.Builder offer() {
+        offered = true;
+        return Protos.Offer.newBuilder()
+                .setSlaveId(slaveInfo.getId())
+                .setHostname(slaveInfo.getHostname())
+                .addAllAttributes(slaveInfo.getAttributesList())
+                .addResources(scalar("cpus", freeCpus))
+                .addResources(scalar("mem", freeMem));
+    }
+
+    void offerClosed(long filteredUntil) {
+        offered = false;
+        this.filteredUntil = filteredUntil;
+    }
+
+    void clearFilter() {
+        filteredUntil = 0;
+    }
+
+    void allocate(double cpus, double mem) {
+        freeCpus -= cpus;
+        freeMem -= mem;
+    }
+
+    /**
+     * Gives back the resources of a finished task. Like a real master, new resources lift the filter on the agent.
+     */
+    void release(double cpus, double mem) {
+        freeCpus += cpus;
+        freeMem += mem;
+        filteredUntil = 0;
+    }
+
+    void launchTask(final Protos.TaskInfo task, final Protos.ExecutorInfo executorInfo,
+                    final Protos.FrameworkInfo frameworkInfo, final long executorStartupMillis) {
+        executorThread.execute(() -> {
+            if (!executorRegistered) {
+                sleep(executorStartupMillis);
+                executor.registered(executorDriver, executorInfo, frameworkInfo, slaveInfo);
+                executorRegistered = true;
+            }
+            executor.launchTask(executorDriver, task);
+        });
+    }
+
+    void killTask(final Protos.TaskID taskId) {
+        executorThread.execute(() -> executor.killTask(executorDriver, taskId));
+    }
+
+    void frameworkMessage(final byte[] data) {
+        executorThread.execute(() -> executor.frameworkMessage(executorDriver, data));
+    }
+
+    void shutdown() {
+        executorThread.execute(() -> {
+            if (executorRegistered) {
+                executor.shutdown(executorDriver);
+            }
+        });
+        executorThread.shutdown();
+        try {
+            executorThread.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Protos.Resource scalar(String name, double value) {
+        return Protos.Resource.newBuilder()
+                .setName(name)
+                .setType(Protos.Value.Type.SCALAR)
+                .setScalar(Protos.Value.Scalar.newBuilder().setValue(value))
+                .build();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The Executor's view of the cluster: status updates and messages go back to the scheduler through the
+     * cluster event loop.
+     */
+    private class AgentExecutorDriver implements ExecutorDriver {
+
+        @Override
+        public Protos.Status start() {
+            return Protos.Status.DRIVER_RUNNING;
+        }
+
+        @Override
+        public Protos.Status stop() {
+            return Protos.Status.DRIVER_STOPPED;
+        }
+
+        @Override
+        public Protos.Status abort() {
+            return Protos.Status.DRIVER_ABORTED;
+        }
+
+        @Override
+        public Protos.Status join() {
+            return Protos.Status.DRIVER_STOPPED;
+        }
+
+        @Override
+        public Protos.Status run() {
+            return Protos.Status.DRIVER_STOPPED;
+        }
+
+        @Override
+        public Protos.Status sendStatusUpdate(Protos.TaskStatus status) {
+            cluster.statusUpdate(LocalAgent.this, status.toBuilder()
+                    .setSlaveId(slaveInfo.getId())
+                    .setSource(Protos.TaskStatus.Source.SOURCE_EXECUTOR)
+                    .build());
+            return Protos.Status.DRIVER_RUNNING;
+        }
+
+        @Override
+        public Protos.Status sendFrameworkMessage(byte[] data) {
+            cluster.frameworkMessage(LocalAgent.this, data);
+            return Protos.Status.DRIVER_RUNNING;
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package com.andresolarte.mesos.benchmarks.cluster;
+
+import org.apache.mesos.Executor;
+import org.apache.mesos.Protos;
+import org.apache.mesos.Scheduler;
+import org.apache.mesos.SchedulerDriver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * An in-process stand in for a Mesos master and its slaves, to measure the framework without a cluster.
+ * <p>
+ * The cluster is the Scheduler's driver. Every scheduler callback runs on a single event loop thread, as with the
+ * real driver. Offers are made from the free resources of each virtual agent, launched tasks are delivered to that
+ * agent's Executor after the configured launch latency, and status updates and framework messages are routed back.
+ * Offer filters are kept per agent, and are lifted when the agent gets resources back or offers are revived.
+ * A configurable share of the launched tasks is lost instead of delivered, to exercise failure handling.
+ */
+public class LocalCluster implements SchedulerDriver {
+    private final Scheduler scheduler;
+    private final Protos.FrameworkInfo frameworkInfo;
+    private final Config config;
+    private final List<LocalAgent> agents = new ArrayList<>();
+    private final ScheduledExecutorService eventLoop;
+    private final Random random;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final AtomicInteger offerIds = new AtomicInteger();
+    //Open offers and launched tasks, only touched from the event loop
+    private final Map<String, LocalAgent> openOffers = new HashMap<>();
+    private final Map<String, LaunchedTask> runningTasks = new HashMap<>();
+    private volatile Protos.Status status = Protos.Status.DRIVER_NOT_STARTED;
+    private boolean suppressed;
+    private long startNanos;
+    private long stopNanos;
+    private int launchedTasks;
+    private int lostTasks;
+    private int declinedOffers;
+
+    public LocalCluster(Scheduler scheduler, Protos.FrameworkInfo frameworkInfo, Config config,
+                        Supplier<? extends Executor> executors) {
+        this.scheduler = scheduler;
+        this.frameworkInfo = frameworkInfo;
+        this.config = config;
+        this.random = new Random(config.seed);
+        for (int i = 0; i < config.agents; i++) {
+            agents.add(new LocalAgent(this, i, config.cpusPerAgent, config.memPerAgent, config.attributes(i),
+                    executors.get()));
+        }
+        eventLoop = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "local-master");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Protos.Status start() {
+        startNanos = System.nanoTime();
+        status = Protos.Status.DRIVER_RUNNING;
+        eventLoop.execute(() -> {
+            scheduler.registered(this, frameworkInfo.getId(), Protos.MasterInfo.newBuilder()
+                    .setId("local").setIp(0x7F000001).setPort(5050).build());
+            sendOffers();
+        });
+        eventLoop.scheduleWithFixedDelay(this::sendOffers,
+                config.offerIntervalMillis, config.offerIntervalMillis, TimeUnit.MILLISECONDS);
+        return status;
+    }
+
+    @Override
+    public Protos.Status stop(boolean failover) {
+        return finish(Protos.Status.DRIVER_STOPPED);
+    }
+
+    @Override
+    public Protos.Status stop() {
+        return stop(false);
+    }
+
+    @Override
+    public Protos.Status abort() {
+        return finish(Protos.Status.DRIVER_ABORTED);
+    }
+
+    private synchronized Protos.Status finish(Protos.Status finalStatus) {
+        if (stopped.getCount() > 0) {
+            stopNanos = System.nanoTime();
+            status = finalStatus;
+            stopped.countDown();
+        }
+        return status;
+    }
+
+    @Override
+    public Protos.Status join() {
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        eventLoop.shutdownNow();
+        for (LocalAgent agent : agents) {
+            agent.shutdown();
+        }
+        return status;
+    }
+
+    @Override
+    public Protos.Status run() {
+        start();
+        return join();
+    }
+
+    /**
+     * Time from start until the scheduler stopped or aborted the driver.
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(stopNanos - startNanos);
+    }
+
+    public int getLaunchedTasks() {
+        return launchedTasks;
+    }
+
+    public int getLostTasks() {
+        return lostTasks;
+    }
+
+    public int getDeclinedOffers() {
+        return declinedOffers;
+    }
+
+    private void sendOffers() {
+        if (status != Protos.Status.DRIVER_RUNNING || suppressed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Protos.Offer> offers = new ArrayList<>();
+        for (LocalAgent agent : agents) {
+            if (agent.canOffer(now)) {
+                Protos.OfferID offerId = Protos.OfferID.newBuilder()
+                        .setValue("offer-" + offerIds.incrementAndGet()).build();
+                offers.add(agent.offer()
+                        .setId(offerId)
+                        .setFrameworkId(frameworkInfo.getId())
+                        .build());
+                openOffers.put(offerId.getValue(), agent);
+            }
+        }
+        if (!offers.isEmpty()) {
+            scheduler.resourceOffers(this, offers);
+        }
+    }
+
+    @Override
+    public Protos.Status requestResources(Collection<Protos.Request> requests) {
+        return status;
+    }
+
+    @Override
+    public Protos.Status launchTasks(Collection<Protos.OfferID> offerIds, Collection<Protos.TaskInfo> tasks,
+                                     Protos.Filters filters) {
+        List<Protos.Offer.Operation> operations = new ArrayList<>();
+        operations.add(Protos.Offer.Operation.newBuilder()
+                .setType(Protos.Offer.Operation.Type.LAUNCH)
+                .setLaunch(Protos.Offer.Operation.Launch.newBuilder().addAllTaskInfos(tasks))
+                .build());
+        return acceptOffers(offerIds, operations, filters);
+    }
+
+    @Override
+    public Protos.Status launchTasks(Collection<Protos.OfferID> offerIds, Collection<Protos.TaskInfo> tasks) {
+        return launchTasks(offerIds, tasks, Protos.Filters.getDefaultInstance());
+    }
+
+    @Override
+    public Protos.Status launchTasks(Protos.OfferID offerId, Collection<Protos.TaskInfo> tasks,
+                                     Protos.Filters filters) {
+        List<Protos.OfferID> offerIds = new ArrayList<>();
+        offerIds.add(offerId);
+        return launchTasks(offerIds, tasks, filters);
+    }
+
+    @Override
+    public Protos.Status launchTasks(Protos.OfferID offerId, Collection<Protos.TaskInfo> tasks) {
+        return launchTasks(offerId, tasks, Protos.Filters.getDefaultInstance());
+    }
+
+    @Override
+    public Protos.Status acceptOffers(Collection<Protos.OfferID> offerIds,
+                                      Collection<Protos.Offer.Operation> operations,
+                                      Protos.Filters filters) {
+        final List<Protos.TaskInfo> tasks = new ArrayList<>();
+        for (Protos.Offer.Operation operation : operations) {
+            if (operation.getType() == Protos.Offer.Operation.Type.LAUNCH) {
+                tasks.addAll(operation.getLaunch().getTaskInfosList());
+            }
+        }
+        final List<Protos.OfferID> ids = new ArrayList<>(offerIds);
+        onEventLoop(() -> {
+            for (Protos.OfferID offerId : ids) {
+                LocalAgent agent = openOffers.remove(offerId.getValue());
+                if (agent != null) {
+                    agent.offerClosed(System.currentTimeMillis() + refuseMillis(filters));
+                }
+            }
+            for (Protos.TaskInfo task : tasks) {
+                launch(task);
+            }
+        });
+        return status;
+    }
+
+    private void launch(final Protos.TaskInfo task) {
+        final LocalAgent agent = findAgent(task.getSlaveId());
+        final LaunchedTask launched = new LaunchedTask(agent, task);
+        agent.allocate(launched.cpus, launched.mem);
+        runningTasks.put(task.getTaskId().getValue(), launched);
+        launchedTasks++;
+        final boolean lose = random.nextDouble() < config.taskFailureRate;
+        eventLoop.schedule(() -> {
+            if (lose) {
+                lostTasks++;
+                deliverStatus(agent, Protos.TaskStatus.newBuilder()
+                        .setTaskId(task.getTaskId())
+                        .setSlaveId(agent.getId())
+                        .setState(Protos.TaskState.TASK_LOST)
+                        .setSource(Protos.TaskStatus.Source.SOURCE_MASTER)
+                        .setReason(Protos.TaskStatus.Reason.REASON_SLAVE_REMOVED)
+                        .setMessage("Injected failure")
+                        .build());
+            } else {
+                agent.launchTask(task, task.getExecutor(), frameworkInfo, config.executorStartupMillis);
+            }
+        }, config.launchLatencyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void statusUpdate(final LocalAgent agent, final Protos.TaskStatus status) {
+        onEventLoop(() -> deliverStatus(agent, status));
+    }
+
+    private void deliverStatus(LocalAgent agent, Protos.TaskStatus taskStatus) {
+        if (isTerminal(taskStatus.getState())) {
+            LaunchedTask launched = runningTasks.remove(taskStatus.getTaskId().getValue());
+            if (launched != null) {
+                agent.release(launched.cpus, launched.mem);
+            }
+        }
+        if (status == Protos.Status.DRIVER_RUNNING) {
+            scheduler.statusUpdate(this, taskStatus);
+        }
+    }
+
+    void frameworkMessage(final LocalAgent agent, final byte[] data) {
+        final Protos.ExecutorID executorId = Protos.ExecutorID.newBuilder().setValue("default").build();
+        onEventLoop(() -> {
+            if (status == Protos.Status.DRIVER_RUNNING) {
+                scheduler.frameworkMessage(this, executorId, agent.getId(), data);
+            }
+        });
+    }
+
+    @Override
+    public Protos.Status killTask(final Protos.TaskID taskId) {
+        onEventLoop(() -> {
+            LaunchedTask launched = runningTasks.get(taskId.getValue());
+            if (launched != null) {
+                launched.agent.killTask(taskId);
+            }
+        });
+        return status;
+    }
+
+    @Override
+    public Protos.Status declineOffer(final Protos.OfferID offerId, final Protos.Filters filters) {
+        onEventLoop(() -> {
+            LocalAgent agent = openOffers.remove(offerId.getValue());
+            if (agent != null) {
+                declinedOffers++;
+                agent.offerClosed(System.currentTimeMillis() + refuseMillis(filters));
+            }
+        });
+        return status;
+    }
+
+    @Override
+    public Protos.Status declineOffer(Protos.OfferID offerId) {
+        return declineOffer(offerId, Protos.Filters.getDefaultInstance());
+    }
+
+    @Override
+    public Protos.Status reviveOffers() {
+        onEventLoop(() -> {
+            suppressed = false;
+            for (LocalAgent agent : agents) {
+                agent.clearFilter();
+            }
+            sendOffers();
+        });
+        return status;
+    }
+
+    @Override
+    public Protos.Status suppressOffers() {
+        onEventLoop(() -> suppressed = true);
+        return status;
+    }
+
+    @Override
+    public Protos.Status acknowledgeStatusUpdate(Protos.TaskStatus status) {
+        return this.status;
+    }
+
+    @Override
+    public Protos.Status sendFrameworkMessage(Protos.ExecutorID executorId, final Protos.SlaveID slaveId,
+                                              final byte[] data) {
+        onEventLoop(() -> findAgent(slaveId).frameworkMessage(data));
+        return status;
+    }
+
+    @Override
+    public Protos.Status reconcileTasks(Collection<Protos.TaskStatus> statuses) {
+        return status;
+    }
+
+    private void onEventLoop(Runnable runnable) {
+        if (!eventLoop.isShutdown()) {
+            eventLoop.execute(runnable);
+        }
+    }
+
+    private LocalAgent findAgent(Protos.SlaveID slaveId) {
+        for (LocalAgent agent : agents) {
+            if (agent.getId().equals(slaveId)) {
+                return agent;
+            }
+        }
+        throw new IllegalArgumentException("Unknown agent " + slaveId.getValue());
+    }
+
+    private static long refuseMillis(Protos.Filters filters) {
+        return (long) (filters.getRefuseSeconds() * 1000);
+    }
+
+    private static boolean isTerminal(Protos.TaskState state) {
+        return state == Protos.TaskState.TASK_FINISHED ||
+                state == Protos.TaskState.TASK_FAILED ||
+                state == Protos.TaskState.TASK_KILLED ||
+                state == Protos.TaskState.TASK_LOST ||
+                state == Protos.TaskState.TASK_ERROR;
+    }
+
+    private static double scalar(Protos.TaskInfo task, String name) {
+        double value = 0;
+        for (Protos.Resource resource : task.getResourcesList()) {
+            if (resource.getName().equals(name)) {
+                value += resource.getScalar().getValue();
+            }
+        }
+        return value;
+    }
+
+    private static class LaunchedTask {
+        private final LocalAgent agent;
+        private final double cpus;
+        private final double mem;
+
+        LaunchedTask(LocalAgent agent, Protos.TaskInfo task) {
+            this.agent = agent;
+            this.cpus = scalar(task, "cpus");
+            this.mem = scalar(task, "mem");
+        }
+    }
+
+    /**
+     * Shape of the simulated cluster.
+     */
+    public static class Config {
+        private int agents = 4;
+        private double cpusPerAgent = 4;
+        private double memPerAgent = 4096;
+        private long launchLatencyMillis = 5;
+        private long executorStartupMillis = 200;
+        private long offerIntervalMillis = 100;
+        private double taskFailureRate = 0;
+        private long seed = 1;
+        private long shardedInputLength = 0;
+
+        public Config agents(int agents) {
+            this.agents = agents;
+            return this;
+        }
+
+        public Config cpusPerAgent(double cpusPerAgent) {
+            this.cpusPerAgent = cpusPerAgent;
+            return this;
+        }
+
+        public Config memPerAgent(double memPerAgent) {
+            this.memPerAgent = memPerAgent;
+            return this;
+        }
+
+        /**
+         * Delay between the scheduler accepting an offer and the task reaching the Executor.
+         */
+        public Config launchLatencyMillis(long launchLatencyMillis) {
+            this.launchLatencyMillis = launchLatencyMillis;
+            return this;
+        }
+
+        /**
+         * Extra delay for the first task on each agent, standing in for the Executor JVM startup.
+         */
+        public Config executorStartupMillis(long executorStartupMillis) {
+            this.executorStartupMillis = executorStartupMillis;
+            return this;
+        }
+
+        /**
+         * How often free resources are offered, like the allocation interval of a real master.
+         */
+        public Config offerIntervalMillis(long offerIntervalMillis) {
+            this.offerIntervalMillis = offerIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Share of the launched tasks, between 0 and 1, that are reported TASK_LOST instead of running.
+         */
+        public Config taskFailureRate(double taskFailureRate) {
+            this.taskFailureRate = taskFailureRate;
+            return this;
+        }
+
+        public Config seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Has every agent advertise an equal share of an input of this length as held locally, in the {@code input}
+         * attribute the Scheduler places tasks by.
+         */
+        public Config shardedInput(long inputLength) {
+            this.shardedInputLength = inputLength;
+            return this;
+        }
+
+        List<Protos.Attribute> attributes(int agent) {
+            List<Protos.Attribute> attributes = new ArrayList<>();
+            if (shardedInputLength > 0) {
+                attributes.add(Protos.Attribute.newBuilder()
+                        .setName("input")
+                        .setType(Protos.Value.Type.RANGES)
+                        .setRanges(Protos.Value.Ranges.newBuilder().addRange(Protos.Value.Range.newBuilder()
+                                .setBegin(shardedInputLength * agent / agents)
+                                .setEnd(shardedInputLength * (agent + 1) / agents - 1)))
+                        .build());
+            }
+            return attributes;
+        }
+
+        @Override
+        public String toString() {
+            return "agents=" + agents +
+                    ", cpusPerAgent=" + cpusPerAgent +
+                    ", memPerAgent=" + memPerAgent +
+                    ", launchLatencyMillis=" + launchLatencyMillis +
+                    ", executorStartupMillis=" + executorStartupMillis +
+                    ", taskFailureRate=" + taskFailureRate +
+                    (shardedInputLength > 0 ? ", shardedInput=" + shardedInputLength : "");
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.andresolarte.mesos.benchmarks.cluster;
+
+import org.apache.mesos.Protos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to result of a whole job on the in-process cluster, for a few chunking and packing strategies.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocalClusterBenchmark {
+
+    @Param({"4"})
+    private int agents;
+
+    @Param({"1", "8"})
+    private int requestsPerTask;
+
+    @Param({"4096", "1048576"})
+    private int minWindowsPerTask;
+
+    @Param({"50000000"})
+    private long digits;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("scheduler.requestsPerTask", Integer.toString(requestsPerTask));
+        System.setProperty("largestproduct.minWindowsPerTask", Integer.toString(minWindowsPerTask));
+        // Let the task count follow minWindowsPerTask instead of the duration target
+        System.setProperty("largestproduct.windowsPerMillisecond", "1");
+    }
+
+    @Benchmark
+    public long job() {
+        LocalClusterRunner.Result result = LocalClusterRunner.run(digits, new LocalCluster.Config().agents(agents));
+        if (result.getStatus() != Protos.Status.DRIVER_STOPPED) {
+            throw new IllegalStateException("Job ended with " + result.getStatus());
+        }
+        return result.getElapsedMillis();
+    }
+}
@@ -0,0 +1,86 @@
+package com.andresolarte.mesos.benchmarks.cluster;
+
+import com.andresolarte.mesos.benchmarks.Inputs;
+import com.andresolarte.mesos.framework.TestExecutor;
+import com.andresolarte.mesos.framework.TestScheduler;
+import com.andresolarte.mesos.framework.input.DigitInput;
+import com.andresolarte.mesos.framework.metrics.FrameworkMetrics;
+import org.apache.mesos.Protos;
+
+/**
+ * Runs a whole job on a {@link LocalCluster} and reports how long it took.
+ * <p>
+ * Usage: {@code LocalClusterRunner [digits] [agents] [cpusPerAgent] [launchLatencyMillis] [taskFailureRate]}.
+ * The framework is tuned with its usual system properties (e.g. {@code -Dscheduler.requestsPerTask=8}), so
+ * different chunking and packing strategies can be compared on one machine. With {@code -Dcluster.shardInput=true}
+ * every agent advertises a share of the input as local, to try out locality aware placement. With
+ * {@code -Dcluster.skewedInput=true} the input is {@link Inputs#skewedInput(long)}, to try out pruning.
+ */
+public class LocalClusterRunner {
+
+    public static void main(String[] args) {
+        long digits = args.length > 0 ? Long.parseLong(args[0]) : 100000000L;
+        LocalCluster.Config config = new LocalCluster.Config()
+                .agents(args.length > 1 ? Integer.parseInt(args[1]) : 4)
+                .cpusPerAgent(args.length > 2 ? Double.parseDouble(args[2]) : 4)
+                .launchLatencyMillis(args.length > 3 ? Long.parseLong(args[3]) : 5)
+                .taskFailureRate(args.length > 4 ? Double.parseDouble(args[4]) : 0);
+        if (Boolean.getBoolean("cluster.shardInput")) {
+            config.shardedInput(digits);
+        }
+
+        Result result = run(digits, config);
+        System.out.println("Cluster:        " + config);
+        System.out.println("Input digits:   " + digits);
+        System.out.println("Final state:    " + result.status);
+        System.out.println("Time to result: " + result.elapsedMillis + " ms");
+        System.out.println("Tasks launched: " + result.launchedTasks + " (" + result.lostTasks + " lost)");
+        System.out.println("Tasks/second:   " + String.format("%.1f", result.getTasksPerSecond()));
+        System.out.println("Offers declined: " + result.declinedOffers);
+        System.out.println(FrameworkMetrics.get().getSummary());
+    }
+
+    public static Result run(long digits, LocalCluster.Config config) {
+        Inputs.quietLogging();
+        DigitInput input = Boolean.getBoolean("cluster.skewedInput")
+                ? Inputs.skewedInput(digits) : Inputs.syntheticInput(digits);
+        TestScheduler scheduler = new TestScheduler(true, Inputs.executorInfo(), input, null);
+        Protos.FrameworkInfo frameworkInfo = Protos.FrameworkInfo.newBuilder()
+                .setId(Protos.FrameworkID.newBuilder().setValue("local"))
+                .setUser("")
+                .setName("Test Framework (local)")
+                .build();
+        LocalCluster cluster = new LocalCluster(scheduler, frameworkInfo, config, TestExecutor::new);
+        Protos.Status status = cluster.run();
+        return new Result(status, cluster.getElapsedMillis(), cluster.getLaunchedTasks(), cluster.getLostTasks(),
+                cluster.getDeclinedOffers());
+    }
+
+    public static class Result {
+        private final Protos.Status status;
+        private final long elapsedMillis;
+        private final int launchedTasks;
+        private final int lostTasks;
+        private final int declinedOffers;
+
+        Result(Protos.Status status, long elapsedMillis, int launchedTasks, int lostTasks, int declinedOffers) {
+            this.status = status;
+            this.elapsedMillis = elapsedMillis;
+            this.launchedTasks = launchedTasks;
+            this.lostTasks = lostTasks;
+            this.declinedOffers = declinedOffers;
+        }
+
+        public Protos.Status getStatus() {
+            return status;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getTasksPerSecond() {
+            return launchedTasks * 1000.0 / Math.max(1, elapsedMillis);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.andresolarte.mesos.benchmarks.startup;
+
+import com.andresolarte.mesos.benchmarks.StubExecutorDriver;
+import com.andresolarte.mesos.framework.TestExecutor;
+import com.andresolarte.mesos.framework.dto.Request;
+import com.andresolarte.mesos.framework.job.JobTask;
+import com.andresolarte.mesos.framework.logic.LargestProductJob;
+import com.andresolarte.mesos.framework.util.ByteStringUtils;
+import org.apache.mesos.Protos;
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Executor side of {@link ExecutorStartupRunner}: a freshly spawned JVM that registers a {@link TestExecutor}
+ * with a stub driver, launches one task on it, and prints how long after the spawn each step happened.
+ * <p>
+ * Usage: {@code ExecutorStartup <spawnMicros>}, where the spawn time is in microseconds since the epoch.
+ */
+public class ExecutorStartup {
+    private static final int DIGITS = 100000;
+
+    public static void main(String[] args) throws Exception {
+        long spawned = Long.parseLong(args[0]);
+        // Built up front, a slave hands the task over ready to run
+        Protos.TaskInfo task = task();
+        TestExecutor executor = new TestExecutor();
+        TimingDriver driver = new TimingDriver();
+        executor.registered(driver, Protos.ExecutorInfo.getDefaultInstance(),
+                Protos.FrameworkInfo.getDefaultInstance(),
+                Protos.SlaveInfo.newBuilder().setHostname("localhost").build());
+        long registered = nowMicros();
+        executor.launchTask(driver, task);
+        if (!driver.finished.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("The task didn't finish");
+        }
+        System.out.println("registered=" + (registered - spawned)
+                + " running=" + (driver.running - spawned)
+                + " finished=" + (driver.finishedAt - spawned));
+        System.exit(0);
+    }
+
+    private static Protos.TaskInfo task() {
+        byte[] digits = new byte[DIGITS];
+        Random random = new Random(8);
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = (byte) random.nextInt(10);
+        }
+        Request request = new Request(digits, 13);
+        return Protos.TaskInfo.newBuilder()
+                .setTaskId(Protos.TaskID.newBuilder().setValue("startup"))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue("local"))
+                .setName("startup")
+                .addResources(Protos.Resource.newBuilder()
+                        .setName("cpus")
+                        .setType(Protos.Value.Type.SCALAR)
+                        .setScalar(Protos.Value.Scalar.newBuilder().setValue(1)))
+                .setLabels(JobTask.labels(LargestProductJob.NAME))
+                .setData(ByteStringUtils.toByteString(request))
+                .build();
+    }
+
+    static long nowMicros() {
+        Instant now = Instant.now();
+        return TimeUnit.SECONDS.toMicros(now.getEpochSecond()) + TimeUnit.NANOSECONDS.toMicros(now.getNano());
+    }
+
+    /**
+     * Notes when the first {@code TASK_RUNNING} and the {@code TASK_FINISHED} updates come in.
+     */
+    private static class TimingDriver extends StubExecutorDriver {
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile long running;
+        private volatile long finishedAt;
+
+        @Override
+        public Protos.Status sendStatusUpdate(Protos.TaskStatus status) {
+            long now = nowMicros();
+            if (status.getState() == Protos.TaskState.TASK_RUNNING && running == 0) {
+                running = now;
+            } else if (status.getState() == Protos.TaskState.TASK_FINISHED) {
+                finishedAt = now;
+                finished.countDown();
+            }
+            return super.sendStatusUpdate(status);
+        }
+    }
+}
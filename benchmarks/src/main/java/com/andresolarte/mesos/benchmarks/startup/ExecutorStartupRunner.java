@@ -0,0 +1,120 @@
+package com.andresolarte.mesos.benchmarks.startup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures how long a freshly spawned Executor takes to be ready, by starting {@link ExecutorStartup} through the
+ * {@code vm/test-executor} launcher, so the launcher's JVM flags and class data sharing archive apply like they
+ * would on a slave. Reports the time from the spawn to the end of {@code registered}, to the first
+ * {@code TASK_RUNNING} update and to {@code TASK_FINISHED}.
+ * <p>
+ * Usage: {@code ExecutorStartupRunner [runs] [launcher]}. The Mesos jar is taken from the local Maven repository,
+ * or from {@code -Dstartup.mesosJar}. With {@code -Dstartup.train=true} the launcher dumps its archive first.
+ * The native Mesos library isn't loaded, so its own startup is not part of the numbers.
+ */
+public class ExecutorStartupRunner {
+    private static final String MESOS_JAR = System.getProperty("startup.mesosJar",
+            System.getProperty("user.home") + "/.m2/repository/org/apache/mesos/mesos/0.28.0/mesos-0.28.0.jar");
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        String launcher = args.length > 1 ? args[1] : "vm/test-executor";
+        if (Boolean.getBoolean("startup.train")) {
+            Process training = start(launcher, Collections.singletonMap("EXECUTOR_TRAIN", "1"));
+            drain(training);
+            if (training.waitFor() != 0) {
+                throw new IllegalStateException("Training the launcher failed");
+            }
+        }
+
+        // The first spawn pays for reading the jars from disk, which the others don't
+        spawn(launcher);
+        long[][] timings = new long[runs][];
+        for (int i = 0; i < runs; i++) {
+            timings[i] = spawn(launcher);
+        }
+        System.out.println("Launcher:   " + launcher + " (" + runs + " runs)");
+        System.out.println("Registered: " + summary(timings, 0));
+        System.out.println("Running:    " + summary(timings, 1));
+        System.out.println("Finished:   " + summary(timings, 2));
+    }
+
+    /**
+     * @return the microseconds from the spawn to registered, running and finished
+     */
+    private static long[] spawn(String launcher) throws IOException, InterruptedException {
+        long spawned = ExecutorStartup.nowMicros();
+        Process process = start(launcher, Collections.singletonMap("EXECUTOR_MAIN",
+                ExecutorStartup.class.getName()), String.valueOf(spawned));
+        String line = drain(process);
+        if (process.waitFor() != 0 || line == null) {
+            throw new IllegalStateException("The Executor failed to start");
+        }
+        long[] timings = new long[3];
+        String[] fields = line.split(" ");
+        for (int i = 0; i < timings.length; i++) {
+            timings[i] = Long.parseLong(fields[i].substring(fields[i].indexOf('=') + 1));
+        }
+        return timings;
+    }
+
+    private static Process start(String launcher, Map<String, String> env, String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(launcher);
+        command.addAll(Arrays.asList(args));
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        builder.environment().putAll(env);
+        builder.environment().put("MESOS_JAR", MESOS_JAR);
+        builder.environment().put("EXECUTOR_CLASSPATH", benchmarksJar());
+        return builder.start();
+    }
+
+    /**
+     * Reads the output of the process to the end, echoing anything that isn't the timings.
+     *
+     * @return the timings line, if there was one
+     */
+    private static String drain(Process process) throws IOException {
+        String timings = null;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("registered=")) {
+                    timings = line;
+                } else {
+                    System.err.println(line);
+                }
+            }
+        }
+        return timings;
+    }
+
+    private static String benchmarksJar() {
+        try {
+            return new File(ExecutorStartupRunner.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                    .getPath();
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't locate the benchmarks jar", e);
+        }
+    }
+
+    private static String summary(long[][] timings, int step) {
+        long[] values = new long[timings.length];
+        for (int i = 0; i < timings.length; i++) {
+            values[i] = timings[i][step];
+        }
+        Arrays.sort(values);
+        return String.format("median %.1f ms, min %.1f ms, max %.1f ms", values[values.length / 2] / 1000.0,
+                values[0] / 1000.0, values[values.length - 1] / 1000.0);
+    }
+}
@@ -0,0 +1,107 @@
+package com.andresolarte.mesos.framework;
+
+import com.andresolarte.mesos.framework.dto.Request;
+import com.andresolarte.mesos.framework.dto.RequestBatch;
+import com.andresolarte.mesos.framework.job.JobRegistry;
+import com.andresolarte.mesos.framework.job.JobTask;
+import com.andresolarte.mesos.framework.metrics.FrameworkMetrics;
+import com.andresolarte.mesos.framework.util.ByteStringUtils;
+import org.apache.mesos.ExecutorDriver;
+import org.apache.mesos.Protos;
+import org.apache.mesos.Protos.Status;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Takes a {@link TestExecutor} through the steps of a real one, registering and running a task, without a slave.
+ * The {@code test-executor} launcher runs it to find the classes an Executor loads on startup, and dumps them to a
+ * class data sharing archive that the Executors it spawns afterwards start from.
+ */
+public class ExecutorWarmup {
+    private final static Logger LOGGER = Logger.getLogger(ExecutorWarmup.class.getName());
+    private static final int DIGITS = 10000;
+
+    public static void main(String[] args) throws Exception {
+        TestExecutor executor = new TestExecutor();
+        WarmupDriver driver = new WarmupDriver();
+        executor.registered(driver, Protos.ExecutorInfo.getDefaultInstance(),
+                Protos.FrameworkInfo.getDefaultInstance(),
+                Protos.SlaveInfo.newBuilder().setHostname("localhost").build());
+        executor.launchTask(driver, task());
+        if (!driver.ended.await(60, TimeUnit.SECONDS) || driver.state != Protos.TaskState.TASK_FINISHED) {
+            throw new IllegalStateException("The warmup task didn't finish, it is " + driver.state);
+        }
+        // What the Executor does off the task path, so that it is in the archive too
+        FrameworkMetrics.get().publish();
+        LOGGER.info(FrameworkMetrics.get().getSummary());
+        System.exit(0);
+    }
+
+    private static Protos.TaskInfo task() {
+        Random random = new Random(8);
+        byte[] digits = new byte[DIGITS];
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = (byte) random.nextInt(10);
+        }
+        RequestBatch batch = new RequestBatch(Arrays.asList(new Request(digits, 13), new Request(digits, 13)));
+        return Protos.TaskInfo.newBuilder()
+                .setTaskId(Protos.TaskID.newBuilder().setValue("warmup"))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue("warmup"))
+                .setName("warmup")
+                .addResources(Protos.Resource.newBuilder()
+                        .setName("cpus")
+                        .setType(Protos.Value.Type.SCALAR)
+                        .setScalar(Protos.Value.Scalar.newBuilder().setValue(1)))
+                .setLabels(JobTask.labels(JobRegistry.DEFAULT_JOB))
+                .setData(ByteStringUtils.toByteString(batch))
+                .build();
+    }
+
+    private static class WarmupDriver implements ExecutorDriver {
+        private final CountDownLatch ended = new CountDownLatch(1);
+        private volatile Protos.TaskState state;
+
+        @Override
+        public Status start() {
+            return Status.DRIVER_RUNNING;
+        }
+
+        @Override
+        public Status stop() {
+            return Status.DRIVER_STOPPED;
+        }
+
+        @Override
+        public Status abort() {
+            return Status.DRIVER_ABORTED;
+        }
+
+        @Override
+        public Status join() {
+            return Status.DRIVER_STOPPED;
+        }
+
+        @Override
+        public Status run() {
+            return Status.DRIVER_STOPPED;
+        }
+
+        @Override
+        public Status sendStatusUpdate(Protos.TaskStatus status) {
+            state = status.getState();
+            if (state != Protos.TaskState.TASK_RUNNING) {
+                ended.countDown();
+            }
+            return Status.DRIVER_RUNNING;
+        }
+
+        @Override
+        public Status sendFrameworkMessage(byte[] data) {
+            return Status.DRIVER_RUNNING;
+        }
+    }
+}
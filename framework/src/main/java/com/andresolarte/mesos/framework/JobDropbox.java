@@ -0,0 +1,117 @@
+package com.andresolarte.mesos.framework;
+
+import com.andresolarte.mesos.framework.input.MappedDigitInput;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Takes jobs for a long running {@link TestScheduler} from a directory. Every {@code scheduler.jobDirPollMillis} ms
+ * (default 1000) the directory named by {@code scheduler.jobDir} is searched for {@code *.job} files, each holding
+ * the properties of one job:
+ * <ul>
+ *     <li>{@code job}: the job to run (default {@code largest-product})</li>
+ *     <li>{@code input}: a file of digits to search, sent along with the tasks (default the input of the
+ *     framework)</li>
+ *     <li>{@code weight}: the share of the cluster the job gets next to the others (default 1)</li>
+ *     <li>anything else is up to the job, e.g. {@code window}, {@code topResults} and {@code journal} for the largest
+ *     product</li>
+ * </ul>
+ * A file that was taken in is renamed to {@code name.job.running}, or {@code name.job.rejected} if it isn't a valid
+ * job. Once the job is over its result is written to {@code name.result}, or {@code name.failed} if it failed, and
+ * the file is renamed to {@code name.job.done}.
+ */
+public class JobDropbox {
+    private final static Logger LOGGER = Logger.getLogger(JobDropbox.class.getName());
+    private static final long POLL_MILLIS = Long.getLong("scheduler.jobDirPollMillis", 1000);
+
+    private final TestScheduler scheduler;
+    private final Path directory;
+    private ScheduledExecutorService pollService;
+
+    public JobDropbox(TestScheduler scheduler, String directory) {
+        this.scheduler = scheduler;
+        this.directory = Paths.get(directory);
+    }
+
+    public synchronized void start() throws IOException {
+        if (pollService != null) {
+            return;
+        }
+        Files.createDirectories(directory);
+        LOGGER.info("Taking jobs from " + directory.toAbsolutePath());
+        pollService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-dropbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pollService.scheduleWithFixedDelay(this::poll, 0, POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.job")) {
+            for (Path file : files) {
+                take(file);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the jobs in " + directory, e);
+        }
+    }
+
+    private void take(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        String baseName = name.substring(0, name.length() - ".job".length());
+        Path running = file.resolveSibling(name + ".running");
+        Files.move(file, running);
+        MappedDigitInput input = null;
+        try {
+            Properties parameters = new Properties();
+            try (Reader reader = Files.newBufferedReader(running, StandardCharsets.UTF_8)) {
+                parameters.load(reader);
+            }
+            String inputPath = parameters.getProperty("input");
+            if (inputPath != null) {
+                input = new MappedDigitInput(directory.resolve(inputPath).toString());
+            }
+            MappedDigitInput jobInput = input;
+            JobRun run = scheduler.submit(parameters.getProperty("job"), input, parameters,
+                    done -> completed(done, running, baseName, jobInput));
+            LOGGER.info("Took job " + run + " from " + file);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Rejecting the job in " + file, e);
+            Files.move(running, file.resolveSibling(name + ".rejected"), StandardCopyOption.REPLACE_EXISTING);
+            if (input != null) {
+                input.close();
+            }
+        }
+    }
+
+    /**
+     * Writes out the result of a job. Runs on the driver thread.
+     */
+    private void completed(JobRun run, Path running, String baseName, MappedDigitInput input) {
+        Path resultFile = directory.resolve(baseName + (run.isFailed() ? ".failed" : ".result"));
+        String result = run.isFailed() ? "Job " + run + " failed" : String.valueOf(run.getResult());
+        try {
+            Files.write(resultFile, (result + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            Files.move(running, directory.resolve(baseName + ".job.done"), StandardCopyOption.REPLACE_EXISTING);
+            if (input != null) {
+                input.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write the result of job " + run + " to " + resultFile, e);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.andresolarte.mesos.framework;
+
+import com.andresolarte.mesos.framework.job.JobCoordinator;
+import com.andresolarte.mesos.framework.job.JobDefinition;
+import com.andresolarte.mesos.framework.util.ByteStringUtils;
+import com.google.protobuf.ByteString;
+import org.apache.mesos.Protos;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * One job taken in by the {@link TestScheduler}: its coordinator, and the {@link TaskTracker} of its units once it
+ * is split. The tasks of a run have IDs starting with the run ID and a colon, so every status update can be traced
+ * back to its run.
+ * <p>
+ * The Scheduler shares the offers among its runs in proportion to their weights: the next task goes to the run with
+ * the fewest tasks in flight per unit of weight that has work for the slave.
+ * <p>
+ * Only used from the scheduler driver callbacks, once accepted.
+ */
+public class JobRun {
+    private final String id;
+    private final JobDefinition<Serializable, Serializable> job;
+    private final JobCoordinator<Serializable, Serializable> coordinator;
+    private final double weight;
+    private final boolean readsFrameworkInput;
+    private final Consumer<JobRun> onComplete;
+    private final long submittedAt = System.nanoTime();
+    private final LocalityIndex locality = new LocalityIndex();
+    private final PayloadPrefetcher payloads = new PayloadPrefetcher(this::encodePayload);
+    private TaskTracker taskTracker;
+    private boolean failed;
+    private int prunedSeen = 0;
+
+    /**
+     * @param readsFrameworkInput whether the job reads the input of the framework, which the slaves may hold locally
+     * @param onComplete          called on the driver thread once the job is done or has failed, or null
+     */
+    JobRun(String id, JobDefinition<Serializable, Serializable> job,
+           JobCoordinator<Serializable, Serializable> coordinator, double weight, boolean readsFrameworkInput,
+           Consumer<JobRun> onComplete) {
+        this.id = id;
+        this.job = job;
+        this.coordinator = coordinator;
+        this.weight = weight > 0 ? weight : 1;
+        this.readsFrameworkInput = readsFrameworkInput;
+        this.onComplete = onComplete;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getJobName() {
+        return job.getName();
+    }
+
+    public JobDefinition<Serializable, Serializable> getJob() {
+        return job;
+    }
+
+    public JobCoordinator<Serializable, Serializable> getCoordinator() {
+        return coordinator;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return the result of the job, or what there is of it so far
+     */
+    public Serializable getResult() {
+        return coordinator.getResult();
+    }
+
+    /**
+     * @return true if the job was given up on, because some of its work failed too many times
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - submittedAt;
+    }
+
+    /**
+     * @return the tracker of the units, or null until the job is split
+     */
+    TaskTracker getTaskTracker() {
+        return taskTracker;
+    }
+
+    boolean isSplit() {
+        return taskTracker != null;
+    }
+
+    boolean isComplete() {
+        return coordinator.isComplete();
+    }
+
+    boolean readsFrameworkInput() {
+        return readsFrameworkInput;
+    }
+
+    /**
+     * Picks up the job from its journal, if it has one.
+     */
+    void recover(int requestsPerTask) {
+        if (taskTracker == null && coordinator.recover()) {
+            taskTracker = newTaskTracker(requestsPerTask, coordinator::isFinished);
+        }
+    }
+
+    void split(int cores, int requestsPerTask) {
+        coordinator.split(cores);
+        // Some units may be done already, e.g. taken from a cache
+        taskTracker = newTaskTracker(requestsPerTask, coordinator::isFinished);
+    }
+
+    private TaskTracker newTaskTracker(int requestsPerTask, IntPredicate alreadyDone) {
+        return new TaskTracker(id + ":", coordinator.getUnitCount(), requestsPerTask, alreadyDone, locality);
+    }
+
+    /**
+     * Marks the units whose input lies in the ranges as local to the slave.
+     *
+     * @return the number of units marked
+     */
+    int markLocal(String slaveId, Protos.Value.Ranges ranges) {
+        int local = 0;
+        for (int unit = 0; unit < coordinator.getUnitCount(); unit++) {
+            long[] range = coordinator.getInputRange(unit);
+            if (range == null) {
+                return 0;
+            }
+            if (holds(ranges, range[0], range[1])) {
+                locality.markLocal(slaveId, unit, 1);
+                local++;
+            }
+        }
+        return local;
+    }
+
+    private static boolean holds(Protos.Value.Ranges ranges, long first, long last) {
+        for (Protos.Value.Range range : ranges.getRangeList()) {
+            if (range.getBegin() <= first && last <= range.getEnd()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void forgetSlave(String slaveId) {
+        locality.forget(slaveId);
+    }
+
+    /**
+     * The tasks in flight per unit of weight. The run with the smallest share gets the next task.
+     */
+    double getShare() {
+        return taskTracker == null ? 0 : taskTracker.getTasksInFlight() / weight;
+    }
+
+    /**
+     * @return the serialized payload of a task, prepared ahead of time if it could be
+     */
+    ByteString takePayload(TaskTracker.Range range) {
+        return payloads.take(range);
+    }
+
+    /**
+     * Starts preparing the payloads of the next tasks.
+     */
+    void prefetchPayloads() {
+        if (taskTracker != null) {
+            payloads.refill(taskTracker);
+        }
+    }
+
+    private ByteString encodePayload(TaskTracker.Range range) {
+        int count = range.getCount();
+        List<Serializable> units = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            units.add(coordinator.createUnit(range.getFirst() + i));
+        }
+        return ByteStringUtils.toByteString(job.toPayload(units));
+    }
+
+    /**
+     * Stops handing out the units the coordinator found not worth running since the last call.
+     *
+     * @return the tasks running only such units, to be killed
+     */
+    List<String> dropPruned() {
+        int pruned = coordinator.getPrunedCount();
+        if (taskTracker == null || pruned == prunedSeen) {
+            return new ArrayList<>();
+        }
+        prunedSeen = pruned;
+        return taskTracker.dropFinished(coordinator::isFinished);
+    }
+
+    /**
+     * Gives up on the job.
+     *
+     * @return the tasks still running, to be killed
+     */
+    List<String> fail() {
+        failed = true;
+        payloads.clear();
+        return taskTracker == null ? new ArrayList<>() : taskTracker.getTaskIds();
+    }
+
+    /**
+     * The run is over, whether the job completed or failed: closes its coordinator and reports it.
+     */
+    void completed() {
+        payloads.clear();
+        coordinator.close();
+        if (onComplete != null) {
+            onComplete.accept(this);
+        }
+    }
+
+    /**
+     * @return the ID of the run a task belongs to, or null if it isn't the task of a run
+     */
+    static String runIdOf(String taskId) {
+        int separator = taskId.indexOf(':');
+        return separator < 0 ? null : taskId.substring(0, separator);
+    }
+
+    @Override
+    public String toString() {
+        return id + " (" + job.getName() + ")";
+    }
+}
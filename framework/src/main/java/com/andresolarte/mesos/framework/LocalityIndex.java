@@ -0,0 +1,59 @@
+package com.andresolarte.mesos.framework;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers which work units have their data local to which slave, so that the {@link TaskTracker} can send the
+ * units where their data already is.
+ * <p>
+ * A unit becomes local to a slave when the slave advertises the part of the input it holds (see
+ * {@link TestScheduler}), and when a task for it is launched there, since the Executor has read its slice from then
+ * on. A lost slave takes its data along.
+ * <p>
+ * Only used from the scheduler driver callbacks.
+ */
+public class LocalityIndex {
+    private final Map<String, BitSet> unitsBySlave = new HashMap<>();
+    //Units that are local to at least one slave
+    private final BitSet anywhere = new BitSet();
+
+    public void markLocal(String slaveId, int first, int count) {
+        BitSet units = unitsBySlave.get(slaveId);
+        if (units == null) {
+            units = new BitSet();
+            unitsBySlave.put(slaveId, units);
+        }
+        units.set(first, first + count);
+        anywhere.set(first, first + count);
+    }
+
+    /**
+     * @return the units local to the slave; not to be changed
+     */
+    public BitSet unitsOn(String slaveId) {
+        BitSet units = unitsBySlave.get(slaveId);
+        return units == null ? new BitSet() : units;
+    }
+
+    /**
+     * @return the units local to at least one slave; not to be changed
+     */
+    public BitSet unitsAnywhere() {
+        return anywhere;
+    }
+
+    /**
+     * Drops everything local to a slave that went away.
+     */
+    public void forget(String slaveId) {
+        if (unitsBySlave.remove(slaveId) == null) {
+            return;
+        }
+        anywhere.clear();
+        for (BitSet units : unitsBySlave.values()) {
+            anywhere.or(units);
+        }
+    }
+}
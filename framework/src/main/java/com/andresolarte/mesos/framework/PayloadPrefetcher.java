@@ -0,0 +1,131 @@
+package com.andresolarte.mesos.framework;
+
+import com.google.protobuf.ByteString;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Serializes the payloads of the tasks a job is about to launch ahead of time, on a background thread, so that the
+ * offer callback only has to pick them up.
+ * <p>
+ * The payloads prepared are those of {@link TaskTracker#upcoming(int)}: up to {@code scheduler.prefetchTasks} tasks
+ * (default 16, 0 turns it off), and no more than {@code scheduler.prefetchMegabytes} (default 64) going by the size
+ * of the last payload. A task whose payload isn't ready, e.g. a retry or work handed out out of order for locality,
+ * is serialized on the spot like before, and payloads of work that was handed out otherwise are dropped.
+ * <p>
+ * Only used from the scheduler driver callbacks, the background thread only runs the encoder.
+ */
+public class PayloadPrefetcher {
+    private static final int PREFETCH_TASKS = Integer.getInteger("scheduler.prefetchTasks", 16);
+    private static final long PREFETCH_BYTES = Long.getLong("scheduler.prefetchMegabytes", 64) << 20;
+    private static final ExecutorService ENCODER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "payload-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Function<TaskTracker.Range, ByteString> encoder;
+    //Payloads being prepared or ready, by the first unit of their range
+    private final Map<Integer, Prepared> prepared = new HashMap<>();
+    private volatile int lastPayloadSize = 0;
+
+    /**
+     * @param encoder serializes the payload of a range; has to be safe to call from another thread
+     */
+    public PayloadPrefetcher(Function<TaskTracker.Range, ByteString> encoder) {
+        this.encoder = encoder;
+    }
+
+    /**
+     * @return the payload of the range, prepared or serialized right away
+     */
+    public ByteString take(TaskTracker.Range range) {
+        Prepared payload = prepared.remove(range.getFirst());
+        // A payload already being serialized is waited for, one still queued is serialized right away instead
+        if (payload != null && !payload.claim() && payload.count == range.getCount()) {
+            try {
+                return payload.future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                // Serialized again below, where a failure is reported the usual way
+            }
+        }
+        return encode(range);
+    }
+
+    /**
+     * Drops the payloads of work that was handed out otherwise, and starts preparing the next ones.
+     */
+    public void refill(TaskTracker tracker) {
+        for (Iterator<Map.Entry<Integer, Prepared>> it = prepared.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, Prepared> payload = it.next();
+            if (!tracker.isPending(payload.getKey())) {
+                payload.getValue().claim();
+                it.remove();
+            }
+        }
+        int capacity = getCapacity();
+        if (prepared.size() >= capacity) {
+            return;
+        }
+        for (TaskTracker.Range range : tracker.upcoming(capacity)) {
+            if (prepared.size() >= capacity) {
+                return;
+            }
+            if (!prepared.containsKey(range.getFirst())) {
+                Prepared payload = new Prepared(range.getCount());
+                payload.future = CompletableFuture.supplyAsync(() -> payload.claim() ? encode(range) : null, ENCODER);
+                prepared.put(range.getFirst(), payload);
+            }
+        }
+    }
+
+    /**
+     * Drops all the prepared payloads, for a job that is over.
+     */
+    public void clear() {
+        for (Prepared payload : prepared.values()) {
+            payload.claim();
+        }
+        prepared.clear();
+    }
+
+    private int getCapacity() {
+        int size = lastPayloadSize;
+        if (size == 0) {
+            return PREFETCH_TASKS;
+        }
+        return (int) Math.max(Math.min(PREFETCH_TASKS, PREFETCH_BYTES / size), Math.min(PREFETCH_TASKS, 1));
+    }
+
+    private ByteString encode(TaskTracker.Range range) {
+        ByteString payload = encoder.apply(range);
+        lastPayloadSize = payload.size();
+        return payload;
+    }
+
+    private static class Prepared {
+        private final int count;
+        //Taken by whoever serializes the payload first, the background thread or the offer callback
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private CompletableFuture<ByteString> future;
+
+        Prepared(int count) {
+            this.count = count;
+        }
+
+        /**
+         * @return true if the payload wasn't being serialized yet, and now won't be by anyone else
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
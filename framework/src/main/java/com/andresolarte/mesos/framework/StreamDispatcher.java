@@ -0,0 +1,188 @@
+package com.andresolarte.mesos.framework;
+
+import com.andresolarte.mesos.framework.dto.WorkMessage;
+import com.andresolarte.mesos.framework.metrics.FrameworkMetrics;
+import com.andresolarte.mesos.framework.util.ByteStringUtils;
+import org.apache.mesos.Protos;
+import org.apache.mesos.SchedulerDriver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streaming mode of the Scheduler: one long running task per slave, with work pushed to it as framework messages.
+ * Handing out a batch then costs one message instead of a task launch.
+ * <p>
+ * Every worker has at most {@code scheduler.streamingWindow} batches per task slot outstanding; a new batch is sent
+ * as soon as a result comes back. Framework messages can be dropped, so a batch that hasn't been answered within
+ * {@code scheduler.streamingTimeoutSeconds} is given up on and retried like a lost task.
+ * <p>
+ * Batches are tracked by the {@link TaskTracker} of their job like tasks are, with their attempt ID in place of the
+ * task ID. Every batch names its job, so the workers serve whichever jobs the Scheduler is running.
+ * Only used from the scheduler driver callbacks.
+ */
+public class StreamDispatcher {
+    private final static Logger LOGGER = Logger.getLogger(StreamDispatcher.class.getName());
+
+    private final int batchesPerSlot = Integer.getInteger("scheduler.streamingWindow", 2);
+    private final long timeoutNanos = Long.getLong("scheduler.streamingTimeoutSeconds", 60) * 1000000000L;
+    private final BatchSource batches;
+    private final Map<String, Worker> workersByTask = new HashMap<>();
+    private final Map<String, Worker> workersBySlave = new HashMap<>();
+    private final FrameworkMetrics metrics = FrameworkMetrics.get();
+
+    /**
+     * Hands out the work of the Scheduler one batch at a time.
+     */
+    public interface BatchSource {
+        /**
+         * Takes the next batch to run on a slave, recording it as launched.
+         *
+         * @return the batch, or null if there's nothing for the slave right now
+         */
+        WorkMessage next(String slaveId, long now);
+    }
+
+    public StreamDispatcher(BatchSource batches) {
+        this.batches = batches;
+    }
+
+    public boolean hasWorker(String slaveId) {
+        return workersBySlave.containsKey(slaveId);
+    }
+
+    public boolean isWorker(String taskId) {
+        return workersByTask.containsKey(taskId);
+    }
+
+    /**
+     * Records a worker task that was just launched. It gets work once it is running.
+     *
+     * @param slots the number of batches it can run at the same time
+     */
+    public void workerLaunched(Protos.TaskInfo task, int slots) {
+        Worker worker = new Worker(task.getTaskId().getValue(), task.getSlaveId(), task.getExecutor().getExecutorId(),
+                slots * batchesPerSlot);
+        workersByTask.put(worker.taskId, worker);
+        workersBySlave.put(worker.slaveId.getValue(), worker);
+    }
+
+    /**
+     * Fills up a worker that has just started running.
+     */
+    public void workerRunning(SchedulerDriver driver, String taskId) {
+        Worker worker = workersByTask.get(taskId);
+        if (worker != null && !worker.running) {
+            LOGGER.info("Streaming worker " + taskId + " is running on slave " + worker.slaveId.getValue());
+            worker.running = true;
+            fill(driver, worker);
+        }
+    }
+
+    /**
+     * Forgets a worker that stopped.
+     *
+     * @return the attempt IDs of the batches it still had
+     */
+    public List<String> workerEnded(String taskId) {
+        Worker worker = workersByTask.remove(taskId);
+        if (worker == null) {
+            return new ArrayList<>();
+        }
+        workersBySlave.remove(worker.slaveId.getValue());
+        return new ArrayList<>(worker.inFlight.keySet());
+    }
+
+    /**
+     * @return the ID of the worker task on the slave, or null
+     */
+    public String workerOn(String slaveId) {
+        Worker worker = workersBySlave.get(slaveId);
+        return worker == null ? null : worker.taskId;
+    }
+
+    /**
+     * Records the answer to a batch, which frees a place for another one.
+     *
+     * @return how long the batch took, or -1 if it is unknown or was already given up on
+     */
+    public long answered(String attemptId, long now) {
+        for (Worker worker : workersByTask.values()) {
+            Long sent = worker.inFlight.remove(attemptId);
+            if (sent != null) {
+                return now - sent;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sends work to every running worker that has room for it.
+     */
+    public void fill(SchedulerDriver driver) {
+        for (Worker worker : workersByTask.values()) {
+            if (worker.running) {
+                fill(driver, worker);
+            }
+        }
+    }
+
+    /**
+     * Gives up on the batches that have been waiting too long for an answer.
+     *
+     * @return their attempt IDs
+     */
+    public List<String> expire(long now) {
+        List<String> expired = new ArrayList<>();
+        for (Worker worker : workersByTask.values()) {
+            for (Iterator<Map.Entry<String, Long>> it = worker.inFlight.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Long> batch = it.next();
+                if (now - batch.getValue() > timeoutNanos) {
+                    expired.add(batch.getKey());
+                    it.remove();
+                }
+            }
+        }
+        return expired;
+    }
+
+    private void fill(SchedulerDriver driver, Worker worker) {
+        long now = System.nanoTime();
+        while (worker.inFlight.size() < worker.window) {
+            WorkMessage work = batches.next(worker.slaveId.getValue(), now);
+            if (work == null) {
+                return;
+            }
+            worker.inFlight.put(work.getAttemptId(), now);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Sending batch " + work.getAttemptId() + " of job " + work.getJobName() + " to " +
+                        worker.taskId);
+            }
+            metrics.batchSent(work.getPayload().length);
+            driver.sendFrameworkMessage(worker.executorId, worker.slaveId, ByteStringUtils.toMessageBytes(work));
+        }
+    }
+
+    private static class Worker {
+        private final String taskId;
+        private final Protos.SlaveID slaveId;
+        private final Protos.ExecutorID executorId;
+        private final int window;
+        private boolean running;
+        //Send time of the batches waiting for an answer, by attempt ID
+        private final Map<String, Long> inFlight = new LinkedHashMap<>();
+
+        Worker(String taskId, Protos.SlaveID slaveId, Protos.ExecutorID executorId, int window) {
+            this.taskId = taskId;
+            this.slaveId = slaveId;
+            this.executorId = executorId;
+            this.window = Math.max(1, window);
+        }
+    }
+}
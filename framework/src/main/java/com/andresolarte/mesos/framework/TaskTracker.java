@@ -0,0 +1,490 @@
+package com.andresolarte.mesos.framework;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Keeps track of which requests have been handed out, and to which tasks.
+ * <p>
+ * Each task covers a contiguous range of requests. A range whose task fails or is lost goes to a retry queue and is
+ * handed out again before any new work. Once enough tasks have finished to know how long a task usually takes, a
+ * range whose only task has been running for {@code speculationMultiplier} times the
+ * {@code speculationQuantile} of the observed durations is a straggler, and gets a second, speculative task on
+ * another slave. Whichever task finishes first wins; the coordinator drops the other result.
+ * <p>
+ * With a {@link LocalityIndex}, new work goes preferably to a slave its data is local to. A slave that only has
+ * work local to other slaves left waits up to {@code scheduler.localityDelayMillis} for them to take it, and then
+ * gets it anyway (delay scheduling). Work that isn't local anywhere is handed out in order, to any slave.
+ * <p>
+ * Times are in nanoseconds from {@link System#nanoTime()}.
+ * <p>
+ * Only used from the scheduler driver callbacks, which Mesos never runs concurrently.
+ */
+public class TaskTracker {
+    //Task durations kept for the percentile estimate
+    private static final int DURATION_SAMPLES = 1024;
+    private static final int MIN_DURATION_SAMPLES = 5;
+
+    private final String taskIdPrefix;
+    private final int totalRequests;
+    private final int requestsPerTask;
+    private final int maxAttempts;
+    private final double speculationQuantile;
+    private final double speculationMultiplier;
+
+    private final LocalityIndex locality;
+    private final long localityDelay;
+
+    private int nextRequest = 0;
+    //Requests that haven't been handed out yet, and didn't already have a result when this tracker was created,
+    //e.g. recovered from a journal
+    private final BitSet pending = new BitSet();
+    //When each slave first went without work for the sake of locality
+    private final Map<String, Long> waitingSince = new HashMap<>();
+    private int taskSequence = 0;
+    private final Deque<Range> retryQueue = new ArrayDeque<>();
+    private final Map<String, Attempt> attempts = new HashMap<>();
+    //Live tasks of each range, by the first request of the range
+    private final Map<Integer, List<Attempt>> attemptsByRange = new HashMap<>();
+    private final Map<Integer, Integer> failuresByRange = new HashMap<>();
+    private final long[] durations = new long[DURATION_SAMPLES];
+    private int durationCount = 0;
+    //Worked out when a duration comes in, since it is read on every offer
+    private long speculationThreshold = -1;
+
+    public TaskTracker(int totalRequests, int requestsPerTask) {
+        this(totalRequests, requestsPerTask, request -> false);
+    }
+
+    /**
+     * @param alreadyDone tells which requests don't have to be handed out at all
+     */
+    public TaskTracker(int totalRequests, int requestsPerTask, IntPredicate alreadyDone) {
+        this("", totalRequests, requestsPerTask, alreadyDone, null);
+    }
+
+    /**
+     * @param taskIdPrefix put in front of every task ID, to tell apart the tasks of several trackers
+     * @param locality     where the data of each request is, or null to hand out requests in order
+     */
+    public TaskTracker(String taskIdPrefix, int totalRequests, int requestsPerTask, IntPredicate alreadyDone,
+                       LocalityIndex locality) {
+        this(taskIdPrefix, totalRequests, requestsPerTask, alreadyDone,
+                Integer.getInteger("scheduler.maxAttempts", 4),
+                Double.parseDouble(System.getProperty("scheduler.speculationQuantile", "0.75")),
+                Double.parseDouble(System.getProperty("scheduler.speculationMultiplier", "1.5")),
+                locality, Long.getLong("scheduler.localityDelayMillis", 3000) * 1000000L);
+    }
+
+    public TaskTracker(int totalRequests, int requestsPerTask, IntPredicate alreadyDone, int maxAttempts,
+                       double speculationQuantile, double speculationMultiplier) {
+        this("", totalRequests, requestsPerTask, alreadyDone, maxAttempts, speculationQuantile, speculationMultiplier,
+                null, 0);
+    }
+
+    /**
+     * @param localityDelay how long a slave goes without work before it gets work local to another slave
+     */
+    public TaskTracker(String taskIdPrefix, int totalRequests, int requestsPerTask, IntPredicate alreadyDone,
+                       int maxAttempts, double speculationQuantile, double speculationMultiplier,
+                       LocalityIndex locality, long localityDelay) {
+        this.taskIdPrefix = taskIdPrefix;
+        this.totalRequests = totalRequests;
+        this.locality = locality;
+        this.localityDelay = localityDelay;
+        this.requestsPerTask = Math.max(1, requestsPerTask);
+        this.maxAttempts = maxAttempts;
+        this.speculationQuantile = speculationQuantile;
+        this.speculationMultiplier = speculationMultiplier;
+        for (int request = 0; request < totalRequests; request++) {
+            if (!alreadyDone.test(request)) {
+                pending.set(request);
+            }
+        }
+    }
+
+    /**
+     * Picks the work for a new task on the given slave: retries first, then new requests, then a straggler that
+     * isn't already running there.
+     *
+     * @return the range to launch, or null if there's nothing to hand out, or nothing this slave should run yet
+     */
+    public Range nextRange(String slaveId, long now) {
+        if (!retryQueue.isEmpty()) {
+            return retryQueue.poll();
+        }
+        if (skipDone() < totalRequests) {
+            if (locality == null || locality.unitsAnywhere().isEmpty()) {
+                return handOut(nextRequest);
+            }
+            int first = nextPending(locality.unitsOn(slaveId), true);
+            if (first < 0) {
+                first = nextPending(locality.unitsAnywhere(), false);
+            }
+            if (first < 0) {
+                // Only work local to other slaves is left
+                Long waiting = waitingSince.get(slaveId);
+                if (waiting == null) {
+                    waitingSince.put(slaveId, now);
+                    return null;
+                }
+                if (now - waiting < localityDelay) {
+                    return null;
+                }
+                first = nextRequest;
+            }
+            waitingSince.remove(slaveId);
+            return handOut(first);
+        }
+        Attempt straggler = findStraggler(slaveId, now);
+        return straggler == null ? null : new Range(straggler.range.first, straggler.range.count, true);
+    }
+
+    /**
+     * Leapfrogs through both sets, so that nothing is copied however many requests there are.
+     *
+     * @param local true for the first pending request in the set, false for the first one outside of it
+     * @return the request, or -1 if there is none
+     */
+    private int nextPending(BitSet requests, boolean local) {
+        int request = pending.nextSetBit(nextRequest);
+        while (request >= 0) {
+            int candidate = local ? requests.nextSetBit(request) : requests.nextClearBit(request);
+            if (candidate == request) {
+                return request;
+            }
+            if (candidate < 0) {
+                return -1;
+            }
+            request = pending.nextSetBit(candidate);
+        }
+        return -1;
+    }
+
+    /**
+     * Hands out the new requests from first on. Only runs of consecutive requests go in one task.
+     */
+    private Range handOut(int first) {
+        int count = 1;
+        while (count < requestsPerTask && first + count < totalRequests && pending.get(first + count)) {
+            count++;
+        }
+        pending.clear(first, first + count);
+        return new Range(first, count, false);
+    }
+
+    /**
+     * The ranges the next tasks get if no slave is preferred over another, in order: a guess of the work to prepare
+     * ahead of time. Retries and speculative tasks are left out.
+     */
+    public List<Range> upcoming(int max) {
+        List<Range> ranges = new ArrayList<>(Math.max(0, max));
+        for (int first = pending.nextSetBit(nextRequest); first >= 0 && ranges.size() < max;
+             first = pending.nextSetBit(first + ranges.get(ranges.size() - 1).count)) {
+            int count = 1;
+            while (count < requestsPerTask && first + count < totalRequests && pending.get(first + count)) {
+                count++;
+            }
+            ranges.add(new Range(first, count, false));
+        }
+        return ranges;
+    }
+
+    /**
+     * @return true if the request has yet to be handed out for the first time
+     */
+    public boolean isPending(int request) {
+        return pending.get(request);
+    }
+
+    /**
+     * @return true if there are requests waiting to be handed out, or a straggler worth a speculative task
+     */
+    public boolean hasPendingWork(long now) {
+        return !retryQueue.isEmpty() || skipDone() < totalRequests || findStraggler(null, now) != null;
+    }
+
+    /**
+     * @return the next request to hand out, past the ones that are already done
+     */
+    private int skipDone() {
+        int next = pending.nextSetBit(nextRequest);
+        nextRequest = next < 0 ? totalRequests : next;
+        return nextRequest;
+    }
+
+    /**
+     * @return true if any task is still running
+     */
+    public boolean hasTasksInFlight() {
+        return !attempts.isEmpty();
+    }
+
+    public int getTasksInFlight() {
+        return attempts.size();
+    }
+
+    /**
+     * Records that a task was launched for the range, and returns the ID to give it.
+     */
+    public String launched(Range range, String slaveId, long now) {
+        String taskId = taskIdPrefix + range.first + "." + taskSequence++;
+        Attempt attempt = new Attempt(taskId, range, slaveId, now);
+        attempts.put(taskId, attempt);
+        List<Attempt> live = attemptsByRange.get(range.first);
+        if (live == null) {
+            live = new ArrayList<>(2);
+            attemptsByRange.put(range.first, live);
+        }
+        live.add(attempt);
+        return taskId;
+    }
+
+    /**
+     * @return the range the task covers, or null if the task is unknown or no longer tracked
+     */
+    public Range rangeOf(String taskId) {
+        Attempt attempt = attempts.get(taskId);
+        return attempt == null ? null : attempt.range;
+    }
+
+    /**
+     * Records that the task started running on its slave.
+     *
+     * @return how long it took to start since it was launched, or -1 if the task is unknown or already running
+     */
+    public long running(String taskId, long now) {
+        Attempt attempt = attempts.get(taskId);
+        if (attempt == null || attempt.running) {
+            return -1;
+        }
+        attempt.running = true;
+        attempt.runningAt = now;
+        return now - attempt.launchedAt;
+    }
+
+    /**
+     * @return how long the task has been running on its slave, or -1 if it isn't known to be running
+     */
+    public long timeRunning(String taskId, long now) {
+        Attempt attempt = attempts.get(taskId);
+        return attempt == null || !attempt.running ? -1 : now - attempt.runningAt;
+    }
+
+    /**
+     * Records a finished task.
+     *
+     * @return the range it covered, or null if the task is unknown or no longer tracked
+     */
+    public Range finished(String taskId, long now) {
+        Attempt attempt = attempts.get(taskId);
+        if (attempt == null) {
+            return null;
+        }
+        recordDuration(now - attempt.launchedAt);
+        remove(attempt);
+        if (locality != null) {
+            // The Executor there has read the data of the range by now
+            locality.markLocal(attempt.slaveId, attempt.range.first, attempt.range.count);
+        }
+        return attempt.range;
+    }
+
+    /**
+     * Task IDs of the other tasks still running the same range, e.g. the loser of a speculative pair.
+     * They are no longer tracked once returned.
+     */
+    public List<String> takeSiblings(Range range) {
+        List<Attempt> live = attemptsByRange.remove(range.first);
+        List<String> taskIds = new ArrayList<>();
+        if (live != null) {
+            for (Attempt attempt : live) {
+                attempts.remove(attempt.taskId);
+                taskIds.add(attempt.taskId);
+            }
+        }
+        return taskIds;
+    }
+
+    /**
+     * Records a task that failed or was lost. The range is queued for a retry, unless another task is still
+     * running it or it already has a result.
+     *
+     * @param alreadyDone whether the range already has a result
+     * @return false if the range has failed too many times and the job should give up
+     */
+    public boolean failed(String taskId, boolean alreadyDone) {
+        Attempt attempt = attempts.get(taskId);
+        if (attempt == null) {
+            return true;
+        }
+        remove(attempt);
+        if (alreadyDone || attemptsByRange.containsKey(attempt.range.first)) {
+            return true;
+        }
+        Integer failures = failuresByRange.get(attempt.range.first);
+        failures = failures == null ? 1 : failures + 1;
+        failuresByRange.put(attempt.range.first, failures);
+        if (failures >= maxAttempts) {
+            return false;
+        }
+        retryQueue.add(new Range(attempt.range.first, attempt.range.count, false));
+        return true;
+    }
+
+    /**
+     * Stops handing out the requests that were finished some other way, e.g. found not worth running. Tasks whose
+     * requests are all finished are no longer tracked.
+     *
+     * @return the IDs of those tasks, to be killed
+     */
+    public List<String> dropFinished(IntPredicate finished) {
+        for (int request = pending.nextSetBit(0); request >= 0; request = pending.nextSetBit(request + 1)) {
+            if (finished.test(request)) {
+                pending.clear(request);
+            }
+        }
+        retryQueue.removeIf(range -> allFinished(range, finished));
+        List<String> taskIds = new ArrayList<>();
+        for (Attempt attempt : new ArrayList<>(attempts.values())) {
+            if (allFinished(attempt.range, finished)) {
+                remove(attempt);
+                taskIds.add(attempt.taskId);
+            }
+        }
+        return taskIds;
+    }
+
+    private static boolean allFinished(Range range, IntPredicate finished) {
+        for (int request = range.first; request < range.first + range.count; request++) {
+            if (!finished.test(request)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the IDs of all the tasks still running
+     */
+    public List<String> getTaskIds() {
+        return new ArrayList<>(attempts.keySet());
+    }
+
+    /**
+     * @return the IDs of the tasks running on the slave
+     */
+    public List<String> tasksOn(String slaveId) {
+        List<String> taskIds = new ArrayList<>();
+        for (Attempt attempt : attempts.values()) {
+            if (attempt.slaveId.equals(slaveId)) {
+                taskIds.add(attempt.taskId);
+            }
+        }
+        return taskIds;
+    }
+
+    /**
+     * The longest a task may run before it is considered a straggler, or -1 while there aren't enough finished
+     * tasks to tell.
+     */
+    public long getSpeculationThreshold() {
+        return speculationThreshold;
+    }
+
+    private Attempt findStraggler(String slaveId, long now) {
+        long threshold = getSpeculationThreshold();
+        if (threshold < 0) {
+            return null;
+        }
+        Attempt oldest = null;
+        for (List<Attempt> live : attemptsByRange.values()) {
+            if (live.size() != 1) {
+                // Already speculated
+                continue;
+            }
+            Attempt attempt = live.get(0);
+            if (now - attempt.launchedAt <= threshold || attempt.slaveId.equals(slaveId)) {
+                continue;
+            }
+            if (oldest == null || attempt.launchedAt < oldest.launchedAt) {
+                oldest = attempt;
+            }
+        }
+        return oldest;
+    }
+
+    private void remove(Attempt attempt) {
+        attempts.remove(attempt.taskId);
+        List<Attempt> live = attemptsByRange.get(attempt.range.first);
+        if (live != null) {
+            live.remove(attempt);
+            if (live.isEmpty()) {
+                attemptsByRange.remove(attempt.range.first);
+            }
+        }
+    }
+
+    private void recordDuration(long duration) {
+        durations[durationCount % DURATION_SAMPLES] = duration;
+        durationCount++;
+        int samples = Math.min(durationCount, DURATION_SAMPLES);
+        if (samples < MIN_DURATION_SAMPLES) {
+            return;
+        }
+        long[] sorted = Arrays.copyOf(durations, samples);
+        Arrays.sort(sorted);
+        int index = (int) Math.min(samples - 1, Math.floor(speculationQuantile * samples));
+        speculationThreshold = (long) (sorted[index] * speculationMultiplier);
+    }
+
+    /**
+     * A contiguous range of requests handed out as one task.
+     */
+    public static class Range {
+        private final int first;
+        private final int count;
+        private final boolean speculative;
+
+        Range(int first, int count, boolean speculative) {
+            this.first = first;
+            this.count = count;
+            this.speculative = speculative;
+        }
+
+        public int getFirst() {
+            return first;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean isSpeculative() {
+            return speculative;
+        }
+    }
+
+    private static class Attempt {
+        private final String taskId;
+        private final Range range;
+        private final String slaveId;
+        private final long launchedAt;
+        private boolean running;
+        private long runningAt;
+
+        Attempt(String taskId, Range range, String slaveId, long launchedAt) {
+            this.taskId = taskId;
+            this.range = range;
+            this.slaveId = slaveId;
+            this.launchedAt = launchedAt;
+        }
+    }
+}
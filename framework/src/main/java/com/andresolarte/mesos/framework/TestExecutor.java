@@ -1,9 +1,15 @@
 package com.andresolarte.mesos.framework;
 
-import com.andresolarte.mesos.framework.logic.LargestProductFinder;
+import com.andresolarte.mesos.framework.dto.ResultMessage;
+import com.andresolarte.mesos.framework.dto.WorkMessage;
+import com.andresolarte.mesos.framework.job.JobTask;
+import com.andresolarte.mesos.framework.metrics.FrameworkMetrics;
+import com.andresolarte.mesos.framework.util.ByteStringUtils;
+import com.andresolarte.mesos.framework.util.ResourceUtils;
 import org.apache.mesos.Executor;
 import org.apache.mesos.ExecutorDriver;
 import org.apache.mesos.MesosExecutorDriver;
+import org.apache.mesos.Protos;
 import org.apache.mesos.Protos.ExecutorInfo;
 import org.apache.mesos.Protos.FrameworkInfo;
 import org.apache.mesos.Protos.SlaveInfo;
@@ -11,14 +17,61 @@ import org.apache.mesos.Protos.Status;
 import org.apache.mesos.Protos.TaskID;
 import org.apache.mesos.Protos.TaskInfo;
 
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * The Executor is tha class that actually does the job that the framework initiates.
  * There will be one Executor per slave node.
+ * <p>
+ * Tasks run on a worker pool that grows and shrinks with the CPUs the slave allocated to the running tasks, so
+ * threads are reused across tasks. Set the system property {@code executor.virtualThreads} to run tasks on
+ * virtual threads instead, when the JVM supports them.
+ * <p>
+ * In streaming mode the Scheduler launches a single long running task per slave, which holds the CPUs, and pushes
+ * batches of work to it as framework messages. Each batch runs on the worker pool like a task would, and its result
+ * goes back as a framework message too.
  */
 public class TestExecutor implements Executor {
     private final static Logger LOGGER = Logger.getLogger(TestExecutor.class.getName());
+    //How long shutdown waits for running tasks before killing them
+    private final static long SHUTDOWN_GRACE_SECONDS = 3;
+
+    private final ThreadPoolExecutor workerPool;
+    private final ExecutorService taskService;
+    private final int maxWorkers = Runtime.getRuntime().availableProcessors();
+    //Tasks that are queued or running, by task ID
+    private final Map<String, Future<?>> runningTasks = new ConcurrentHashMap<>();
+    private final Map<String, Double> taskCpus = new ConcurrentHashMap<>();
+    //The streaming task of this Executor, if any, and the batches pushed to it that are queued or running
+    private volatile TaskID streamingTask;
+    private volatile String executorId;
+    private final Map<String, Future<?>> streamedBatches = new ConcurrentHashMap<>();
+    private double allocatedCpus = 0;
+    private final FrameworkMetrics metrics = FrameworkMetrics.get();
+
+    public TestExecutor() {
+        workerPool = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new WorkerThreadFactory());
+        workerPool.allowCoreThreadTimeOut(true);
+        ExecutorService virtualThreads = null;
+        if (Boolean.getBoolean("executor.virtualThreads")) {
+            virtualThreads = newVirtualThreadExecutor();
+        }
+        taskService = virtualThreads == null ? workerPool : virtualThreads;
+    }
 
     public static void main(String[] args) throws Exception {
         MesosExecutorDriver driver = new MesosExecutorDriver(new TestExecutor());
@@ -30,7 +83,18 @@ public class TestExecutor implements Executor {
                            ExecutorInfo executorInfo,
                            FrameworkInfo frameworkInfo,
                            SlaveInfo slaveInfo) {
-        LOGGER.info("Registered executor on " + slaveInfo.getHostname());
+        executorId = executorInfo.getExecutorId().getValue();
+        final String hostname = slaveInfo.getHostname();
+        // The first log record and the MBean server load a lot of classes, the first task doesn't wait for them
+        Thread startup = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                LOGGER.info("Registered executor on " + hostname);
+                metrics.publish();
+            }
+        }, "executor-startup");
+        startup.setDaemon(true);
+        startup.start();
     }
 
     @Override
@@ -43,24 +107,206 @@ public class TestExecutor implements Executor {
 
     @Override
     public void launchTask(final ExecutorDriver driver, final TaskInfo task) {
-        new Thread(
-                new LargestProductFinder(task, driver)).start();
+        final String taskId = task.getTaskId().getValue();
+        allocateCpus(taskId, ResourceUtils.getScalar(task, "cpus"));
+        if (JobTask.isStreaming(task)) {
+            LOGGER.info("Streaming task " + taskId + " is waiting for work");
+            streamingTask = task.getTaskId();
+            driver.sendStatusUpdate(Protos.TaskStatus.newBuilder()
+                    .setTaskId(task.getTaskId())
+                    .setState(Protos.TaskState.TASK_RUNNING).build());
+            return;
+        }
+        // Whoever takes the task out of the registry first, the task itself or a kill, sends its final status update
+        final JobTask jobTask = new JobTask(task, driver, () -> runningTasks.remove(taskId) != null);
+        final long queued = System.nanoTime();
+        FutureTask<Void> future = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+                metrics.executorTaskStarted(System.nanoTime() - queued);
+                try {
+                    jobTask.run();
+                } finally {
+                    metrics.executorTaskEnded();
+                    runningTasks.remove(taskId);
+                    releaseCpus(taskId);
+                }
+            }
+        }, null);
+        // Registered before it's queued, so that it can't finish before it shows up in the registry
+        runningTasks.put(taskId, future);
+        taskService.execute(future);
     }
 
     @Override
     public void killTask(ExecutorDriver driver, TaskID taskId) {
+        if (taskId.equals(streamingTask)) {
+            stopStreaming(driver);
+            return;
+        }
+        Future<?> future = runningTasks.remove(taskId.getValue());
+        if (future != null) {
+            future.cancel(true);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Killed task " + taskId.getValue());
+            }
+            metrics.executorTaskKilled();
+            releaseCpus(taskId.getValue());
+            sendKilled(driver, taskId);
+        }
     }
 
+    /**
+     * Takes a batch of work pushed to the streaming task, and answers with its result once it has run.
+     */
     @Override
-    public void frameworkMessage(ExecutorDriver driver, byte[] data) {
+    public void frameworkMessage(final ExecutorDriver driver, byte[] data) {
+        final WorkMessage work = ByteStringUtils.fromMessageBytes(data, WorkMessage.class);
+        if (work == null) {
+            String attempt = ByteStringUtils.attemptIdOf(data);
+            LOGGER.warning("Dropped an undecodable message on executor " + executorId +
+                    (attempt == null ? "" : " for batch " + attempt));
+            if (attempt != null) {
+                send(driver, ResultMessage.failed(attempt, "Undecodable message"));
+            }
+            return;
+        }
+        final String attemptId = work.getAttemptId();
+        if (streamingTask == null) {
+            send(driver, ResultMessage.failed(attemptId, "No streaming task is running"));
+            return;
+        }
+        final long queued = System.nanoTime();
+        FutureTask<Void> future = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+                metrics.executorTaskStarted(System.nanoTime() - queued);
+                ResultMessage answer;
+                try {
+                    long started = System.nanoTime();
+                    Serializable result = JobTask.process(work.getJobName(), work.getParallelism(),
+                            ByteStringUtils.fromBytes(work.getPayload()));
+                    metrics.taskRan(System.nanoTime() - started);
+                    answer = ResultMessage.finished(attemptId, ByteStringUtils.toByteString(result).toByteArray());
+                } catch (InterruptedException e) {
+                    // The streaming task was killed, nobody is waiting for the answer
+                    return;
+                } catch (Exception e) {
+                    answer = ResultMessage.failed(attemptId, String.valueOf(e));
+                } finally {
+                    metrics.executorTaskEnded();
+                    streamedBatches.remove(attemptId);
+                }
+                send(driver, answer);
+            }
+        }, null);
+        streamedBatches.put(attemptId, future);
+        taskService.execute(future);
+    }
+
+    private void send(ExecutorDriver driver, ResultMessage message) {
+        driver.sendFrameworkMessage(ByteStringUtils.toMessageBytes(message));
     }
 
+    /**
+     * Drops the batches of the streaming task and gives its CPUs back.
+     */
+    private void stopStreaming(ExecutorDriver driver) {
+        TaskID taskId = streamingTask;
+        if (taskId == null) {
+            return;
+        }
+        streamingTask = null;
+        for (Future<?> batch : streamedBatches.values()) {
+            batch.cancel(true);
+        }
+        streamedBatches.clear();
+        LOGGER.info("Stopped streaming task " + taskId.getValue());
+        releaseCpus(taskId.getValue());
+        sendKilled(driver, taskId);
+    }
+
+    /**
+     * Lets the running tasks finish within a short grace period, then kills whatever is left.
+     */
     @Override
     public void shutdown(ExecutorDriver driver) {
+        LOGGER.info("Shutting down with " + runningTasks.size() + " tasks in flight");
+        taskService.shutdown();
+        try {
+            taskService.awaitTermination(SHUTDOWN_GRACE_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (String taskId : runningTasks.keySet()) {
+            killTask(driver, TaskID.newBuilder().setValue(taskId).build());
+        }
+        stopStreaming(driver);
+        taskService.shutdownNow();
+        workerPool.shutdownNow();
+        driver.stop();
     }
 
     @Override
     public void error(ExecutorDriver driver, String message) {
+        LOGGER.severe("Error: " + message);
+    }
+
+    private void sendKilled(ExecutorDriver driver, TaskID taskId) {
+        driver.sendStatusUpdate(Protos.TaskStatus.newBuilder()
+                .setTaskId(taskId)
+                .setState(Protos.TaskState.TASK_KILLED).build());
+    }
+
+    private synchronized void allocateCpus(String taskId, double cpus) {
+        taskCpus.put(taskId, cpus);
+        allocatedCpus += cpus;
+        resizeWorkerPool();
+    }
+
+    private synchronized void releaseCpus(String taskId) {
+        Double cpus = taskCpus.remove(taskId);
+        if (cpus != null) {
+            allocatedCpus -= cpus;
+            resizeWorkerPool();
+        }
+    }
+
+    /**
+     * One worker per allocated CPU, but never more workers than the machine has cores.
+     */
+    private void resizeWorkerPool() {
+        int workers = (int) Math.max(1, Math.min(maxWorkers, Math.ceil(allocatedCpus)));
+        if (workers > workerPool.getMaximumPoolSize()) {
+            workerPool.setMaximumPoolSize(workers);
+            workerPool.setCorePoolSize(workers);
+        } else if (workers < workerPool.getMaximumPoolSize()) {
+            workerPool.setCorePoolSize(workers);
+            workerPool.setMaximumPoolSize(workers);
+        }
+    }
+
+    /**
+     * Virtual threads need Java 21, so they are looked up reflectively to keep the build on Java 8.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.log(Level.WARNING, "Virtual threads are not available, using the worker pool", e);
+            return null;
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 
 }
@@ -1,12 +1,14 @@
 package com.andresolarte.mesos.framework;
 
+import com.andresolarte.mesos.framework.input.DigitInput;
+import com.andresolarte.mesos.framework.input.MappedDigitInput;
+import com.andresolarte.mesos.framework.metrics.FrameworkMetrics;
 import org.apache.mesos.MesosSchedulerDriver;
 import org.apache.mesos.Protos.CommandInfo;
 import org.apache.mesos.Protos.ExecutorID;
 import org.apache.mesos.Protos.ExecutorInfo;
 import org.apache.mesos.Protos.FrameworkInfo;
 import org.apache.mesos.Protos.Status;
-import org.apache.mesos.Scheduler;
 
 import java.io.File;
 import java.util.logging.Logger;
@@ -26,20 +28,38 @@ public class TestFramework {
 
     private static void usage() {
         String name = TestFramework.class.getName();
-        System.err.println("Usage: " + name + " master");
+        System.err.println("Usage: " + name + " master [digit-file]");
     }
 
     public static void main(String[] args) throws Exception {
-        if (args.length !=1) {
+        if (args.length < 1 || args.length > 2) {
             usage();
             System.exit(1);
         }
 
         String uri = new File("/vagrant/test-executor").getCanonicalPath();
 
+        DigitInput input = null;
+        String sharedInputId = null;
+        CommandInfo.Builder command = CommandInfo.newBuilder().setValue(uri);
+        if (args.length == 2) {
+            LOGGER.info("Reading digits from " + args[1]);
+            File inputFile = new File(args[1]).getCanonicalFile();
+            input = new MappedDigitInput(inputFile.getPath());
+            if (Boolean.getBoolean("scheduler.shareInput")) {
+                // The fetcher stages the file in each Executor sandbox, tasks then only carry offsets into it
+                LOGGER.info("Staging the input on the slaves instead of sending the digits with the tasks");
+                sharedInputId = inputFile.getName();
+                command.addUris(CommandInfo.URI.newBuilder()
+                        .setValue(inputFile.getPath())
+                        .setExtract(false)
+                        .setCache(true));
+            }
+        }
+
         ExecutorInfo executor = ExecutorInfo.newBuilder()
                 .setExecutorId(ExecutorID.newBuilder().setValue("default"))
-                .setCommand(CommandInfo.newBuilder().setValue(uri))
+                .setCommand(command)
                 .setName("Test Executor (Java)")
                 .setSource("java_test")
                 .build();
@@ -56,12 +76,18 @@ public class TestFramework {
             implicitAcknowledgements = false;
         }
 
-        Scheduler scheduler =  new TestScheduler(implicitAcknowledgements, executor);
+        TestScheduler scheduler =  new TestScheduler(implicitAcknowledgements, executor, input, sharedInputId);
+        String jobDir = System.getProperty("scheduler.jobDir");
+        if (jobDir != null) {
+            // Long running: the jobs come from the directory, and the framework stays up between them
+            new JobDropbox(scheduler, jobDir).start();
+        }
 
         MesosSchedulerDriver driver = null;
 
         frameworkBuilder.setPrincipal("test-framework-java");
 
+        FrameworkMetrics.get().publish();
         driver = new MesosSchedulerDriver(scheduler, frameworkBuilder.build(), args[0], implicitAcknowledgements);
 
         int status = driver.run() == Status.DRIVER_STOPPED ? 0 : 1;
@@ -1,53 +1,222 @@
 package com.andresolarte.mesos.framework;
 
-import com.andresolarte.mesos.framework.dto.Request;
-import com.andresolarte.mesos.framework.dto.Result;
-import com.andresolarte.mesos.framework.logic.LargestProductCoordinator;
+import com.andresolarte.mesos.framework.dto.ResultMessage;
+import com.andresolarte.mesos.framework.dto.WorkMessage;
+import com.andresolarte.mesos.framework.input.DigitInput;
+import com.andresolarte.mesos.framework.job.JobCoordinator;
+import com.andresolarte.mesos.framework.job.JobDefinition;
+import com.andresolarte.mesos.framework.job.JobRegistry;
+import com.andresolarte.mesos.framework.job.JobTask;
+import com.andresolarte.mesos.framework.metrics.FrameworkMetrics;
 import com.andresolarte.mesos.framework.util.ByteStringUtils;
+import com.andresolarte.mesos.framework.util.ResourceUtils;
+import com.google.protobuf.ByteString;
 import org.apache.mesos.Protos;
 import org.apache.mesos.Scheduler;
 import org.apache.mesos.SchedulerDriver;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * The Scheduler will receive offers from available slaves in the Mesos cluster, and will send out tasks.
  * The Scheduler receives different status messages from the Executors running on the slaves
+ * <p>
+ * It runs any number of jobs at the same time, each as a {@link JobRun} with its own work queue. The job given to
+ * the constructor starts right away, and more can be added with {@link #submit}. Offers are shared among the jobs by
+ * weighted fair share: every task goes to the job with the fewest tasks in flight per unit of weight, among those
+ * with work for the slave. With the system property {@code scheduler.jobDir} set the Scheduler is long running: it
+ * starts without a job, takes its jobs from {@link JobDropbox}, and keeps the framework, and with it the Executors on
+ * the slaves, up between jobs. Otherwise it stops the driver once the jobs are done.
+ * <p>
+ * With the system property {@code scheduler.streaming} set, it launches one long running task per slave instead,
+ * and streams the work to it as framework messages, see {@link StreamDispatcher}.
+ * <p>
+ * A slave holding part of the input says so with a ranges attribute named by {@code scheduler.localityAttribute}
+ * (default {@code input}), listing the input indexes it holds, e.g. {@code input:[0-49999999]}. The tasks reading
+ * that part then go to that slave first, see {@link TaskTracker}.
  */
 public class TestScheduler implements Scheduler {
     private final static Logger LOGGER = Logger.getLogger(TestScheduler.class.getName());
-    private static double CPUS_PER_TASK = 1;
+    private static double CPUS_PER_TASK = Double.parseDouble(System.getProperty("scheduler.cpusPerTask", "1"));
     private static double MEM_PER_TASK = 32;
+    private static double DECLINE_REFUSE_SECONDS = 120;
+    private static final Protos.Resource TASK_CPUS = scalar("cpus", CPUS_PER_TASK);
+    private static final Protos.Resource TASK_MEM = scalar("mem", MEM_PER_TASK);
+    //Filter for offers declined while tasks are still running, short enough to catch stragglers and retries
+    private static double DECLINE_IN_FLIGHT_REFUSE_SECONDS = 5;
     //Configuration variables
     private final boolean implicitAcknowledgements;
     private final Protos.ExecutorInfo executor;
+    private final int requestsPerTask = Integer.getInteger("scheduler.requestsPerTask", 1);
+    private final boolean longRunning = System.getProperty("scheduler.jobDir") != null;
+    //The input of the framework, read by the jobs submitted without one of their own
+    private final DigitInput input;
+    private final String sharedInputId;
     //Task control variables
-    private int launchedTasks = 0;
-    private int finishedTasks = 0;
-
-    private LargestProductCoordinator largestProductCoordinator;
+    private final List<JobRun> runs = new ArrayList<>();
+    private final Map<String, JobRun> runsById = new HashMap<>();
+    //Jobs submitted from other threads, taken in by the next driver callback
+    private final Queue<JobRun> submitted = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger runsSubmitted = new AtomicInteger();
+    private volatile SchedulerDriver driver;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private boolean offersDeclined = false;
+    private final FrameworkMetrics metrics = FrameworkMetrics.get();
+    //The most CPUs each slave has offered, to size the jobs
+    private final Map<String, Double> slaveCpus = new HashMap<>();
+    private final String localityAttribute = System.getProperty("scheduler.localityAttribute", "input");
+    //Slaves whose locality attribute has been read, and the input ranges of those that have one
+    private final Set<String> localitySlaves = new HashSet<>();
+    private final Map<String, Protos.Value.Ranges> slaveInputs = new HashMap<>();
+    //Only set in streaming mode
+    private final StreamDispatcher dispatcher;
+    private final String workerJobName;
+    private int workersLaunched = 0;
+    //The parts of a task that don't change, by job name; a launch only stamps its IDs and payload
+    private final Map<String, Protos.TaskInfo> taskTemplates = new HashMap<>();
 
 
     public TestScheduler(boolean implicitAcknowledgements,
                          Protos.ExecutorInfo executor) {
+        this(implicitAcknowledgements, executor, null, null);
+    }
+
+    /**
+     * The job to run is named by the {@code scheduler.job} system property, see {@link JobRegistry}.
+     *
+     * @param input         the digits to search, or null for the built in example
+     * @param sharedInputId if not null, the ID under which the input is staged on the slaves; tasks then carry only
+     *                      the range of the input they cover
+     */
+    public TestScheduler(boolean implicitAcknowledgements,
+                         Protos.ExecutorInfo executor,
+                         DigitInput input,
+                         String sharedInputId) {
         this.implicitAcknowledgements = implicitAcknowledgements;
         this.executor = executor;
-        largestProductCoordinator = new LargestProductCoordinator();
-        largestProductCoordinator.setupTasks();
+        this.input = input;
+        this.sharedInputId = sharedInputId;
+        JobDefinition<Serializable, Serializable> job = JobRegistry.get(System.getProperty("scheduler.job"));
+        workerJobName = job.getName();
+        if (!longRunning) {
+            submitted.add(new JobRun(nextRunId(), job, job.createCoordinator(input, sharedInputId), 1, true, null));
+        }
+        dispatcher = Boolean.getBoolean("scheduler.streaming") ? new StreamDispatcher(this::nextBatch) : null;
+    }
+
+    /**
+     * Adds a job to the ones running. Safe to call from any thread.
+     *
+     * @param jobName    the job to run, or null for the default one, see {@link JobRegistry}
+     * @param jobInput   the digits to search, sent along with the tasks, or null for the input of the framework
+     * @param parameters the settings of the job, see {@link JobDefinition#createCoordinator(DigitInput, String,
+     *                   Properties)}, and its {@code weight} in the fair share (default 1)
+     * @param onComplete called on the driver thread once the job is done or has failed, or null
+     * @return the run of the job
+     * @throws IllegalArgumentException if the job or its parameters aren't valid
+     */
+    public JobRun submit(String jobName, DigitInput jobInput, Properties parameters, Consumer<JobRun> onComplete) {
+        JobDefinition<Serializable, Serializable> job = JobRegistry.get(jobName);
+        boolean frameworkInput = jobInput == null;
+        JobCoordinator<Serializable, Serializable> coordinator = job.createCoordinator(
+                frameworkInput ? input : jobInput, frameworkInput ? sharedInputId : null, parameters);
+        JobRun run = new JobRun(nextRunId(), job, coordinator,
+                Double.parseDouble(parameters.getProperty("weight", "1")), frameworkInput, onComplete);
+        submitted.add(run);
+        LOGGER.info("Submitted job " + run);
+        SchedulerDriver current = driver;
+        if (current != null) {
+            current.reviveOffers();
+        }
+        return run;
+    }
+
+    private String nextRunId() {
+        return "job-" + runsSubmitted.incrementAndGet();
     }
 
+    /**
+     * Starts the jobs submitted since the last callback. A job is split once there are offers to size it by.
+     */
+    private void acceptSubmissions(SchedulerDriver driver) {
+        this.driver = driver;
+        if (submitted.isEmpty()) {
+            return;
+        }
+        for (JobRun run = submitted.poll(); run != null; run = submitted.poll()) {
+            runs.add(run);
+            runsById.put(run.getId(), run);
+            LOGGER.info("Starting job " + run + " with weight " + run.getWeight() + ", " + runs.size() +
+                    " jobs running");
+            run.recover(requestsPerTask);
+            if (run.isSplit()) {
+                markLocal(run);
+            }
+        }
+        offersDeclined = false;
+        finishIfComplete(driver);
+    }
 
     @Override
     public void registered(SchedulerDriver driver,
                            Protos.FrameworkID frameworkId,
                            Protos.MasterInfo masterInfo) {
         LOGGER.info("Framework registered with ID = " + frameworkId.getValue());
+        acceptSubmissions(driver);
     }
 
     @Override
     public void reregistered(SchedulerDriver driver, Protos.MasterInfo masterInfo) {
+        acceptSubmissions(driver);
+        reviveOffersIfPending(driver);
+    }
+
+    /**
+     * Reports and drops the jobs that are done. Without {@code scheduler.jobDir} the driver is stopped once there
+     * are none left.
+     */
+    private void finishIfComplete(SchedulerDriver driver) {
+        for (JobRun run : new ArrayList<>(runs)) {
+            if (run.isComplete()) {
+                run.getCoordinator().outputResult();
+                LOGGER.info("Job " + run + " done in " + TimeUnit.NANOSECONDS.toMillis(run.getElapsedNanos()) + " ms");
+                LOGGER.info(metrics.getSummary());
+                remove(run);
+                run.completed();
+            }
+        }
+        if (!longRunning && runs.isEmpty() && submitted.isEmpty() && finished.compareAndSet(false, true)) {
+            driver.stop();
+        }
+    }
+
+    private void remove(JobRun run) {
+        runs.remove(run);
+        runsById.remove(run.getId());
+    }
+
+    /**
+     * @return the run the task or batch belongs to, or null if it is done
+     */
+    private JobRun runOf(String taskId) {
+        String runId = JobRun.runIdOf(taskId);
+        return runId == null ? null : runsById.get(runId);
     }
 
     @Override
@@ -57,47 +226,224 @@ public class TestScheduler implements Scheduler {
     @Override
     public void resourceOffers(SchedulerDriver driver,
                                List<Protos.Offer> offers) {
+        long received = System.nanoTime();
+        metrics.offersReceived(offers.size());
+        acceptSubmissions(driver);
+        for (Protos.Offer offer : offers) {
+            slaveCpus.merge(offer.getSlaveId().getValue(), ResourceUtils.getScalar(offer, "cpus"), Math::max);
+        }
+        if (splitRuns()) {
+            // A job may need no tasks at all
+            finishIfComplete(driver);
+        }
+        for (Protos.Offer offer : offers) {
+            readLocality(offer);
+        }
+        // The background thread serializes payloads while this one launches
+        prefetchPayloads();
+        if (dispatcher != null) {
+            expireBatches(driver, received);
+            dispatcher.fill(driver);
+        }
 
         for (Protos.Offer offer : offers) {
-            reviewOfferAndLaunchTask(driver, offer);
+            reviewOfferAndLaunchTask(driver, offer, received);
         }
+        prefetchPayloads();
+        metrics.setTasksInFlight(getTasksInFlight());
     }
 
-    private void reviewOfferAndLaunchTask(SchedulerDriver driver, Protos.Offer offer) {
-        LOGGER.info(
-                "Received offer from slave: " + offer.getSlaveId());
-        if (launchedTasks < largestProductCoordinator.getTotalTasks()) {
-            launchTask(driver, offer);
+    /**
+     * Starts preparing the payloads of the next tasks of every job, while the driver waits for the next callback.
+     */
+    private void prefetchPayloads() {
+        for (JobRun run : runs) {
+            run.prefetchPayloads();
         }
     }
 
-    private void launchTask(SchedulerDriver driver, Protos.Offer offer) {
-        Request request = largestProductCoordinator.createRequest(launchedTasks);
-        Protos.Offer.Operation.Launch.Builder launch = Protos.Offer.Operation.Launch.newBuilder();
+    /**
+     * Splits the jobs that aren't yet, for all the CPUs the slaves have offered so far.
+     *
+     * @return true if any job was split
+     */
+    private boolean splitRuns() {
+        double cpus = 0;
+        for (double slave : slaveCpus.values()) {
+            cpus += slave;
+        }
+        boolean split = false;
+        for (JobRun run : runs) {
+            if (!run.isSplit()) {
+                run.split(Math.max(1, (int) (cpus / CPUS_PER_TASK)), requestsPerTask);
+                markLocal(run);
+                split = true;
+            }
+        }
+        return split;
+    }
 
-        Protos.TaskID taskId = Protos.TaskID.newBuilder()
-                .setValue(Integer.toString(launchedTasks++)).build();
+    private void reviewOfferAndLaunchTask(SchedulerDriver driver, Protos.Offer offer, long received) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Received offer from slave: " + offer.getSlaveId().getValue());
+        }
+        int slots = (int) Math.min(
+                ResourceUtils.getScalar(offer, "cpus") / CPUS_PER_TASK,
+                ResourceUtils.getScalar(offer, "mem") / MEM_PER_TASK);
+        if (slots == 0 || !hasPendingTasks() ||
+                dispatcher != null && dispatcher.hasWorker(offer.getSlaveId().getValue())) {
+            declineOffer(driver, offer);
+            return;
+        }
+        if (dispatcher != null) {
+            launchWorker(driver, offer, slots);
+        } else {
+            launchTasks(driver, offer, slots, received);
+        }
+    }
 
-        LOGGER.info("Launching task " + taskId.getValue() +
-                " using offer " + offer.getId().getValue());
+    /**
+     * Reads the part of the input the slave holds, the first time it makes an offer, and indexes the units of the
+     * jobs that read it.
+     */
+    private void readLocality(Protos.Offer offer) {
+        String slaveId = offer.getSlaveId().getValue();
+        if (!localitySlaves.add(slaveId)) {
+            return;
+        }
+        for (Protos.Attribute attribute : offer.getAttributesList()) {
+            if (attribute.getName().equals(localityAttribute) && attribute.getType() == Protos.Value.Type.RANGES) {
+                slaveInputs.put(slaveId, attribute.getRanges());
+                for (JobRun run : runs) {
+                    if (run.isSplit()) {
+                        markLocal(run, slaveId, attribute.getRanges());
+                    }
+                }
+            }
+        }
+    }
 
-        Protos.TaskInfo task = Protos.TaskInfo.newBuilder()
-                .setName("task " + taskId.getValue())
-                .setTaskId(taskId)
-                .setSlaveId(offer.getSlaveId())
-                .addResources(Protos.Resource.newBuilder()
-                        .setName("cpus")
-                        .setType(Protos.Value.Type.SCALAR)
-                        .setScalar(Protos.Value.Scalar.newBuilder().setValue(CPUS_PER_TASK)))
-                .addResources(Protos.Resource.newBuilder()
-                        .setName("mem")
-                        .setType(Protos.Value.Type.SCALAR)
-                        .setScalar(Protos.Value.Scalar.newBuilder().setValue(MEM_PER_TASK)))
-                .setExecutor(Protos.ExecutorInfo.newBuilder(executor))
-                .setData(ByteStringUtils.toByteString(request))
-                .build();
+    private void markLocal(JobRun run) {
+        for (Map.Entry<String, Protos.Value.Ranges> slave : slaveInputs.entrySet()) {
+            markLocal(run, slave.getKey(), slave.getValue());
+        }
+    }
 
-        launch.addTaskInfos(Protos.TaskInfo.newBuilder(task));
+    private void markLocal(JobRun run, String slaveId, Protos.Value.Ranges ranges) {
+        int local = run.readsFrameworkInput() ? run.markLocal(slaveId, ranges) : 0;
+        if (local > 0) {
+            LOGGER.info("Slave " + slaveId + " holds the input of " + local + " units of job " + run);
+        }
+    }
+
+    private boolean hasPendingTasks() {
+        if (!submitted.isEmpty()) {
+            return true;
+        }
+        long now = System.nanoTime();
+        for (JobRun run : runs) {
+            if (!run.isSplit() || run.getTaskTracker().hasPendingWork(now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasTasksInFlight() {
+        for (JobRun run : runs) {
+            if (run.isSplit() && run.getTaskTracker().hasTasksInFlight()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int getTasksInFlight() {
+        int inFlight = 0;
+        for (JobRun run : runs) {
+            if (run.isSplit()) {
+                inFlight += run.getTaskTracker().getTasksInFlight();
+            }
+        }
+        return inFlight;
+    }
+
+    /**
+     * Declines an offer we have no use for. The long filter keeps the master from offering the same resources
+     * back every second; {@link #reviveOffersIfPending(SchedulerDriver)} undoes it once there's work again.
+     * While tasks are still running, or work is held back for a slave its data is local to, the filter is short
+     * instead, so that the offers keep coming back in time to launch a speculative task for a straggler or to give
+     * up on locality.
+     */
+    private void declineOffer(SchedulerDriver driver, Protos.Offer offer) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Declining offer " + offer.getId().getValue());
+        }
+        metrics.offerDeclined();
+        double refuseSeconds = hasTasksInFlight() || hasPendingTasks()
+                ? DECLINE_IN_FLIGHT_REFUSE_SECONDS : DECLINE_REFUSE_SECONDS;
+        Protos.Filters filters = Protos.Filters.newBuilder().setRefuseSeconds(refuseSeconds).build();
+        driver.declineOffer(offer.getId(), filters);
+        offersDeclined = true;
+    }
+
+    private void reviveOffersIfPending(SchedulerDriver driver) {
+        if (offersDeclined && hasPendingTasks()) {
+            LOGGER.info("Reviving offers for pending tasks");
+            offersDeclined = false;
+            driver.reviveOffers();
+        }
+    }
+
+    /**
+     * Picks the job the next task on the slave goes to: the one with the smallest share of the tasks in flight for
+     * its weight, or the earliest submitted on a tie, that has work for the slave.
+     *
+     * @return the job and its work, or null if no job has work for the slave right now
+     */
+    private Assignment nextAssignment(String slaveId, long now) {
+        List<JobRun> candidates = new ArrayList<>(runs.size());
+        for (JobRun run : runs) {
+            if (run.isSplit()) {
+                candidates.add(run);
+            }
+        }
+        if (candidates.size() > 1) {
+            // Stable, so ties stay in submission order
+            candidates.sort(Comparator.comparingDouble(JobRun::getShare));
+        }
+        for (JobRun run : candidates) {
+            TaskTracker.Range range = run.getTaskTracker().nextRange(slaveId, now);
+            if (range != null) {
+                return new Assignment(run, range);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Launches as many tasks as fit in the offer, all in a single accept call.
+     * Each task carries up to {@link #requestsPerTask} requests.
+     */
+    private void launchTasks(SchedulerDriver driver, Protos.Offer offer, int slots, long received) {
+        Protos.Offer.Operation.Launch.Builder launch = Protos.Offer.Operation.Launch.newBuilder();
+        long now = System.nanoTime();
+        for (int i = 0; i < slots; i++) {
+            Assignment assignment = nextAssignment(offer.getSlaveId().getValue(), now);
+            if (assignment == null) {
+                break;
+            }
+            launch.addTaskInfos(createTask(offer, assignment.run, assignment.range, now, received));
+        }
+        if (launch.getTaskInfosCount() == 0) {
+            // Only stragglers running on this slave, or work local to other slaves, were left
+            declineOffer(driver, offer);
+            return;
+        }
+        accept(driver, offer, launch);
+    }
+
+    private void accept(SchedulerDriver driver, Protos.Offer offer, Protos.Offer.Operation.Launch.Builder launch) {
         List<Protos.OfferID> offerIds = new ArrayList<>();
         offerIds.add(offer.getId());
 
@@ -115,56 +461,318 @@ public class TestScheduler implements Scheduler {
         driver.acceptOffers(offerIds, operations, filters);
     }
 
+    /**
+     * Launches the streaming worker of a slave, holding all the task slots of the offer. A worker runs the batches
+     * of every job.
+     */
+    private void launchWorker(SchedulerDriver driver, Protos.Offer offer, int slots) {
+        String slaveId = offer.getSlaveId().getValue();
+        Protos.TaskID taskId = Protos.TaskID.newBuilder()
+                .setValue("worker-" + slaveId + "-" + (++workersLaunched)).build();
+        LOGGER.info("Launching streaming worker " + taskId.getValue() + " with " + slots + " slots on slave " +
+                slaveId);
+        Protos.TaskInfo task = Protos.TaskInfo.newBuilder()
+                .setName("worker " + taskId.getValue())
+                .setTaskId(taskId)
+                .setSlaveId(offer.getSlaveId())
+                .addResources(scalar("cpus", slots * CPUS_PER_TASK))
+                .addResources(scalar("mem", slots * MEM_PER_TASK))
+                .setExecutor(executor)
+                .setLabels(JobTask.streamingLabels(workerJobName))
+                .build();
+        dispatcher.workerLaunched(task, slots);
+        accept(driver, offer, Protos.Offer.Operation.Launch.newBuilder().addTaskInfos(task));
+    }
+
+    /**
+     * The next batch for a streaming worker, see {@link StreamDispatcher.BatchSource}.
+     */
+    private WorkMessage nextBatch(String slaveId, long now) {
+        Assignment assignment = nextAssignment(slaveId, now);
+        if (assignment == null) {
+            return null;
+        }
+        byte[] payload = assignment.run.takePayload(assignment.range).toByteArray();
+        String attemptId = assignment.run.getTaskTracker().launched(assignment.range, slaveId, now);
+        if (LOGGER.isLoggable(Level.FINE) && assignment.range.isSpeculative()) {
+            LOGGER.fine("Batch " + attemptId + " is speculative");
+        }
+        return new WorkMessage(attemptId, assignment.run.getJobName(), (int) Math.max(1, CPUS_PER_TASK), payload);
+    }
+
+    private Protos.TaskInfo createTask(Protos.Offer offer, JobRun run, TaskTracker.Range range, long now,
+                                       long received) {
+        int count = range.getCount();
+        ByteString payload = run.takePayload(range);
+
+        Protos.TaskID taskId = Protos.TaskID.newBuilder()
+                .setValue(run.getTaskTracker().launched(range, offer.getSlaveId().getValue(), now)).build();
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Launching " + (range.isSpeculative() ? "speculative " : "") + "task " + taskId.getValue() +
+                    " with " + count + " requests using offer " + offer.getId().getValue());
+        }
+
+        metrics.taskLaunched(now - received, payload.size());
+        return Protos.TaskInfo.newBuilder(taskTemplate(run.getJobName()))
+                .setTaskId(taskId)
+                .setSlaveId(offer.getSlaveId())
+                .setData(payload)
+                .build();
+    }
+
+    /**
+     * The resources, executor and labels shared by all the tasks of a job, built once. The template lacks the IDs
+     * every TaskInfo needs, so it is only built partially.
+     */
+    private Protos.TaskInfo taskTemplate(String jobName) {
+        return taskTemplates.computeIfAbsent(jobName, name -> Protos.TaskInfo.newBuilder()
+                .setName(name)
+                .addResources(TASK_CPUS)
+                .addResources(TASK_MEM)
+                .setExecutor(executor)
+                .setLabels(JobTask.labels(name))
+                .buildPartial());
+    }
+
+    private static Protos.Resource scalar(String name, double value) {
+        return Protos.Resource.newBuilder()
+                .setName(name)
+                .setType(Protos.Value.Type.SCALAR)
+                .setScalar(Protos.Value.Scalar.newBuilder().setValue(value))
+                .build();
+    }
+
     @Override
     public void offerRescinded(SchedulerDriver driver, Protos.OfferID offerId) {
     }
 
     @Override
     public void statusUpdate(SchedulerDriver driver, Protos.TaskStatus status) {
-        LOGGER.info("Status update: task " + status.getTaskId().getValue() +
-                " is in state " + status.getState().getValueDescriptor().getName());
-        if (status.getState() == Protos.TaskState.TASK_FINISHED) {
-            finishedTasks++;
-            LOGGER.info("Finished tasks: " + finishedTasks);
-            Result result = ByteStringUtils.fromByteString(status.getData());
-            largestProductCoordinator.ingestResult(result);
+        String taskId = status.getTaskId().getValue();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Status update: task " + taskId +
+                    " is in state " + status.getState().getValueDescriptor().getName());
+        }
+        long now = System.nanoTime();
+        if (dispatcher != null && dispatcher.isWorker(taskId)) {
+            workerStatusUpdate(driver, status);
+        } else {
+            taskStatusUpdate(driver, status, now);
+        }
+        metrics.setTasksInFlight(getTasksInFlight());
+
+        if (!implicitAcknowledgements) {
+            driver.acknowledgeStatusUpdate(status);
         }
 
+        finishIfComplete(driver);
+        prefetchPayloads();
+    }
+
+    private void taskStatusUpdate(SchedulerDriver driver, Protos.TaskStatus status, long now) {
+        String taskId = status.getTaskId().getValue();
+        JobRun run = runOf(taskId);
+        TaskTracker taskTracker = run == null ? null : run.getTaskTracker();
+        if (status.getState() == Protos.TaskState.TASK_RUNNING && taskTracker != null) {
+            long launchToRunning = taskTracker.running(taskId, now);
+            if (launchToRunning >= 0) {
+                metrics.taskRunning(launchToRunning);
+            }
+        }
+        if (status.getState() == Protos.TaskState.TASK_FINISHED && taskTracker != null) {
+            taskFinished(driver, run, taskId, taskTracker.timeRunning(taskId, now), status.getData(), now);
+        }
 
         if (status.getState() == Protos.TaskState.TASK_LOST ||
                 status.getState() == Protos.TaskState.TASK_KILLED ||
                 status.getState() == Protos.TaskState.TASK_FAILED ||
                 status.getState() == Protos.TaskState.TASK_ERROR) {
-            LOGGER.severe("Aborting because task " + status.getTaskId().getValue() +
-                    " is in unexpected state " +
+            if (taskTracker != null && taskTracker.rangeOf(taskId) != null) {
+                LOGGER.warning("Task " + taskId +
+                        " is in state " +
+                        status.getState().getValueDescriptor().getName() +
+                        " with reason '" +
+                        status.getReason().getValueDescriptor().getName() + "'" +
+                        " from source '" +
+                        status.getSource().getValueDescriptor().getName() + "'" +
+                        " with message '" + status.getMessage() + "'");
+                taskFailed(driver, taskId);
+            } else if (LOGGER.isLoggable(Level.FINE)) {
+                // Late update for a task whose result is already in, that we killed, or of a job that is over
+                LOGGER.fine("Ignoring " + status.getState().getValueDescriptor().getName() +
+                        " for task " + taskId + " which is no longer in flight");
+            }
+        }
+    }
+
+    /**
+     * A streaming worker gets its work once it runs. When it ends, for whatever reason, the batches it still had
+     * are retried and a new worker can take over its slave.
+     */
+    private void workerStatusUpdate(SchedulerDriver driver, Protos.TaskStatus status) {
+        String taskId = status.getTaskId().getValue();
+        if (status.getState() == Protos.TaskState.TASK_RUNNING) {
+            dispatcher.workerRunning(driver, taskId);
+        } else if (status.getState() != Protos.TaskState.TASK_STAGING &&
+                status.getState() != Protos.TaskState.TASK_STARTING) {
+            LOGGER.warning("Streaming worker " + taskId + " ended in state " +
                     status.getState().getValueDescriptor().getName() +
-                    " with reason '" +
-                    status.getReason().getValueDescriptor().getName() + "'" +
-                    " from source '" +
-                    status.getSource().getValueDescriptor().getName() + "'" +
                     " with message '" + status.getMessage() + "'");
-            driver.abort();
+            for (String batch : dispatcher.workerEnded(taskId)) {
+                taskFailed(driver, batch);
+            }
+            reviveOffersIfPending(driver);
         }
+    }
 
-        if (!implicitAcknowledgements) {
-            driver.acknowledgeStatusUpdate(status);
+    /**
+     * Takes in the result of a task or a streamed batch. The other copy of a speculated range is no longer needed:
+     * a task is killed, while a batch is left to finish and its result dropped.
+     */
+    private void taskFinished(SchedulerDriver driver, JobRun run, String taskId, long runningToFinished,
+                              ByteString data, long now) {
+        TaskTracker taskTracker = run.getTaskTracker();
+        TaskTracker.Range range = taskTracker.finished(taskId, now);
+        if (range == null) {
+            return;
+        }
+        metrics.taskFinished(runningToFinished, data.size());
+        Serializable result = ByteStringUtils.fromByteString(data);
+        run.getCoordinator().ingestResult(range.getFirst(), range.getCount(), result);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Finished tasks of job " + run + ": " + run.getCoordinator().getFinishedCount());
+        }
+        for (String sibling : taskTracker.takeSiblings(range)) {
+            if (dispatcher == null) {
+                LOGGER.info("Killing task " + sibling + ", task " + taskId + " finished first");
+                driver.killTask(Protos.TaskID.newBuilder().setValue(sibling).build());
+            }
+        }
+        for (String pruned : run.dropPruned()) {
+            if (dispatcher == null) {
+                LOGGER.info("Killing task " + pruned + ", its work can't change the result of job " + run);
+                driver.killTask(Protos.TaskID.newBuilder().setValue(pruned).build());
+            }
         }
+    }
 
-        if (finishedTasks == largestProductCoordinator.getTotalTasks()) {
-            largestProductCoordinator.outputResult();
-            driver.stop();
+    /**
+     * Retries the streamed batches that never got an answer.
+     */
+    private void expireBatches(SchedulerDriver driver, long now) {
+        for (String batch : dispatcher.expire(now)) {
+            LOGGER.warning("Batch " + batch + " timed out");
+            taskFailed(driver, batch);
         }
     }
 
+    /**
+     * Puts the work of a failed or lost task back in the queue, and gets offers flowing again to run it.
+     * Gives up on the job once the same work has failed {@code scheduler.maxAttempts} times.
+     */
+    private void taskFailed(SchedulerDriver driver, String taskId) {
+        JobRun run = runOf(taskId);
+        TaskTracker.Range range = run == null ? null : run.getTaskTracker().rangeOf(taskId);
+        if (range == null) {
+            return;
+        }
+        metrics.taskFailed();
+        if (!run.getTaskTracker().failed(taskId, run.getCoordinator().isFinished(range.getFirst()))) {
+            LOGGER.severe("Giving up on job " + run + " because requests " + range.getFirst() + " to " +
+                    (range.getFirst() + range.getCount() - 1) + " failed too many times");
+            failRun(driver, run);
+            return;
+        }
+        reviveOffersIfPending(driver);
+    }
+
+    /**
+     * Drops a job that can't be completed, and kills its tasks. Without {@code scheduler.jobDir} there's nothing
+     * left to do, so the framework is aborted.
+     */
+    private void failRun(SchedulerDriver driver, JobRun run) {
+        remove(run);
+        for (String taskId : run.fail()) {
+            if (dispatcher == null) {
+                driver.killTask(Protos.TaskID.newBuilder().setValue(taskId).build());
+            }
+        }
+        run.completed();
+        if (!longRunning && finished.compareAndSet(false, true)) {
+            driver.abort();
+        }
+    }
+
+    /**
+     * The tasks on a lost slave or executor won't report back, so their work is retried elsewhere.
+     */
+    private void slaveTasksLost(SchedulerDriver driver, Protos.SlaveID slaveId) {
+        if (dispatcher != null) {
+            String worker = dispatcher.workerOn(slaveId.getValue());
+            if (worker != null) {
+                dispatcher.workerEnded(worker);
+            }
+        }
+        for (JobRun run : new ArrayList<>(runs)) {
+            if (!run.isSplit()) {
+                continue;
+            }
+            for (String taskId : run.getTaskTracker().tasksOn(slaveId.getValue())) {
+                LOGGER.warning("Task " + taskId + " was lost with slave " + slaveId.getValue());
+                taskFailed(driver, taskId);
+            }
+        }
+        metrics.setTasksInFlight(getTasksInFlight());
+    }
+
+    /**
+     * The answer of a streaming worker to a batch. The freed place goes to the next batch right away.
+     */
     @Override
     public void frameworkMessage(SchedulerDriver driver,
                                  Protos.ExecutorID executorId,
                                  Protos.SlaveID slaveId,
                                  byte[] data) {
+        if (dispatcher == null) {
+            return;
+        }
+        ResultMessage answer = ByteStringUtils.fromMessageBytes(data, ResultMessage.class);
+        if (answer == null) {
+            // The batch it answered, if any, is sent again once it expires
+            LOGGER.warning("Dropped an undecodable message from executor " + executorId.getValue() + " on slave " +
+                    slaveId.getValue());
+            return;
+        }
+        String batch = answer.getAttemptId();
+        long now = System.nanoTime();
+        long sentToAnswered = dispatcher.answered(batch, now);
+        // Answers for a job that is already over are dropped
+        JobRun run = runOf(batch);
+        if (run != null && !answer.isFailed()) {
+            taskFinished(driver, run, batch, sentToAnswered, ByteString.copyFrom(answer.getResult()), now);
+        } else if (run != null && run.getTaskTracker().rangeOf(batch) != null) {
+            LOGGER.warning("Batch " + batch + " failed on slave " + slaveId.getValue() +
+                    " with '" + answer.getError() + "'");
+            taskFailed(driver, batch);
+        }
+        expireBatches(driver, now);
+        finishIfComplete(driver);
+        dispatcher.fill(driver);
+        prefetchPayloads();
+        metrics.setTasksInFlight(getTasksInFlight());
     }
 
     @Override
     public void slaveLost(SchedulerDriver driver, Protos.SlaveID slaveId) {
+        LOGGER.warning("Lost slave " + slaveId.getValue());
+        for (JobRun run : runs) {
+            run.forgetSlave(slaveId.getValue());
+        }
+        localitySlaves.remove(slaveId.getValue());
+        slaveInputs.remove(slaveId.getValue());
+        slaveCpus.remove(slaveId.getValue());
+        slaveTasksLost(driver, slaveId);
     }
 
     @Override
@@ -172,6 +780,9 @@ public class TestScheduler implements Scheduler {
                              Protos.ExecutorID executorId,
                              Protos.SlaveID slaveId,
                              int status) {
+        LOGGER.warning("Lost executor " + executorId.getValue() + " on slave " + slaveId.getValue() +
+                " with status " + status);
+        slaveTasksLost(driver, slaveId);
     }
 
     @Override
@@ -179,5 +790,16 @@ public class TestScheduler implements Scheduler {
         LOGGER.severe("Error: " + message);
     }
 
+    /**
+     * The job the next task goes to, and its work.
+     */
+    private static class Assignment {
+        private final JobRun run;
+        private final TaskTracker.Range range;
 
+        Assignment(JobRun run, TaskTracker.Range range) {
+            this.run = run;
+            this.range = range;
+        }
+    }
 }
@@ -4,22 +4,91 @@ import java.io.Serializable;
 
 /**
  * Simple DTO to send a request to a slave.
+ * The digits either travel inside the request, or the request only points at a range of an input that was staged
+ * on the slave beforehand (see {@link #isReference()}).
  */
 public class Request implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private int numberOfDigits;
-    private int[] digitSequence;
+    private byte[] digitSequence;
+    private String inputId;
+    private long offset;
+    private int length;
+    //The product a window has to reach to matter, see getFloor()
+    private int[] floor;
+    //How many of the best windows to answer with, see getTopResults()
+    private int topResults = 1;
 
-    public Request(int[] digitSequence, int numberOfDigits) {
+    /**
+     * @param digitSequence the digits, one per byte
+     */
+    public Request(byte[] digitSequence, int numberOfDigits) {
         this.numberOfDigits = numberOfDigits;
         this.digitSequence = digitSequence;
+        this.length = digitSequence.length;
     }
 
-    public int[] getDigitSequence() {
+    public Request(String inputId, long offset, int length, int numberOfDigits) {
+        this.numberOfDigits = numberOfDigits;
+        this.inputId = inputId;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return the digits, or null if this request is a reference to a staged input
+     */
+    public byte[] getDigitSequence() {
         return digitSequence;
     }
 
+    public boolean isReference() {
+        return digitSequence == null;
+    }
+
+    public String getInputId() {
+        return inputId;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
     public int getNumberOfDigits() {
         return numberOfDigits;
     }
 
+    /**
+     * The product of the worst result the job still keeps when the request was made, as the exponents of
+     * {@link com.andresolarte.mesos.framework.util.DigitProducts#exponents(byte[], int, int)}. Windows with a
+     * smaller product can't make it into the result, so the parts of the digits that can't hold one needn't be
+     * scanned.
+     *
+     * @return the exponents, or null if any window may matter
+     */
+    public int[] getFloor() {
+        return floor;
+    }
+
+    public void setFloor(int[] floor) {
+        this.floor = floor;
+    }
+
+    /**
+     * @return how many of the best windows of the digits to answer with: the best one, and that many minus one
+     * {@link Result#getRunnersUp() runners up}
+     */
+    public int getTopResults() {
+        return Math.max(1, topResults);
+    }
+
+    public void setTopResults(int topResults) {
+        this.topResults = topResults;
+    }
+
 }
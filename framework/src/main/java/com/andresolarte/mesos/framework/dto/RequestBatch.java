@@ -0,0 +1,23 @@
+package com.andresolarte.mesos.framework.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Several requests sent to a slave as a single task. The slave works through them in order and answers
+ * with the best result among them.
+ */
+public class RequestBatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<Request> requests;
+
+    public RequestBatch(List<Request> requests) {
+        this.requests = requests;
+    }
+
+    public List<Request> getRequests() {
+        return requests;
+    }
+
+}
@@ -1,14 +1,38 @@
 package com.andresolarte.mesos.framework.dto;
 
+import com.andresolarte.mesos.framework.util.DigitProducts;
+
 import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 
 /**
  * Simple DTO for a slave to send the result of its calculation.
+ * <p>
+ * The total is the exact product as long as it fits in a long, and {@link #OVERFLOW} once it doesn't. Results are
+ * ranked with {@link #compareProduct(Result)}, which works from the digit sequence in that case, and
+ * {@link #getProduct()} gives the exact product either way.
+ * <p>
+ * When a job keeps more than its best window, the result of a chunk is its best window, with the next best windows
+ * of the chunk as its {@link #getRunnersUp() runners up}.
  */
 public class Result implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The total of a product too large for a long. Products are never negative, so it can't be mistaken for one.
+     */
+    public static final long OVERFLOW = -1;
+
     private long total = 1;
     private String digitSequence;
+    //The next best windows of the same chunk, best first, or null if only the best window was asked for
+    private List<Result> runnersUp;
+    //Prime exponents of the digit sequence, worked out on first use
+    private transient int[] exponents;
 
 
     public long getTotal() {
@@ -19,22 +43,119 @@ public class Result implements Serializable {
         this.total = total;
     }
 
+    public boolean isOverflow() {
+        return total == OVERFLOW;
+    }
+
     public String getDigitSequence() {
         return digitSequence;
     }
 
     public void setDigitSequence(String digitSequence) {
         this.digitSequence = digitSequence;
+        this.exponents = null;
+    }
+
+    /**
+     * @return the next best windows of the same chunk, best first, windows with the same product in the order they
+     * come in the input
+     */
+    public List<Result> getRunnersUp() {
+        return runnersUp == null ? Collections.<Result>emptyList() : runnersUp;
+    }
+
+    /**
+     * @param runnersUp the next best windows, or null if only the best window was asked for
+     */
+    public void setRunnersUp(List<Result> runnersUp) {
+        this.runnersUp = runnersUp;
+    }
+
+    /**
+     * @return true if the result answers a request for more than the best window, in which case its runners up are
+     * all the windows after it that were asked for, and maybe none if the digits held no more
+     */
+    public boolean isTopResults() {
+        return runnersUp != null;
+    }
+
+    /**
+     * @return this window without its runners up, followed by them
+     */
+    public List<Result> getWindows() {
+        if (runnersUp == null) {
+            return Collections.singletonList(this);
+        }
+        List<Result> windows = new ArrayList<>(1 + runnersUp.size());
+        Result best = new Result();
+        best.setTotal(total);
+        best.setDigitSequence(digitSequence);
+        windows.add(best);
+        windows.addAll(runnersUp);
+        return windows;
+    }
+
+    /**
+     * The opposite of {@link #getWindows()}.
+     *
+     * @param windows best first
+     */
+    public static Result ofWindows(List<Result> windows) {
+        Result best = new Result();
+        best.setTotal(windows.get(0).getTotal());
+        best.setDigitSequence(windows.get(0).getDigitSequence());
+        best.setRunnersUp(new ArrayList<>(windows.subList(1, windows.size())));
+        return best;
     }
 
     public void addDigit(int newDigit) {
-        total = total * newDigit;
-        digitSequence = digitSequence + newDigit;
+        total = multiply(total, newDigit);
+        setDigitSequence(digitSequence + newDigit);
     }
 
     public void combine(Result result) {
-        total = total * result.getTotal();
-        digitSequence = digitSequence + result.digitSequence;
+        total = multiply(total, result.getTotal());
+        setDigitSequence(digitSequence + result.digitSequence);
+    }
+
+    private static long multiply(long left, long right) {
+        if (left == OVERFLOW || right == OVERFLOW) {
+            return left == 0 || right == 0 ? 0 : OVERFLOW;
+        }
+        if (left != 0 && right > Long.MAX_VALUE / left) {
+            return OVERFLOW;
+        }
+        return left * right;
+    }
+
+    /**
+     * Compares the products of two results, exactly, without multiplying out products that don't fit in a long.
+     */
+    public int compareProduct(Result other) {
+        if (!isOverflow() && !other.isOverflow()) {
+            return Long.compare(total, other.total);
+        }
+        return DigitProducts.compare(getExponents(), other.getExponents());
+    }
+
+    /**
+     * @return the exact product
+     */
+    public BigInteger getProduct() {
+        return isOverflow() ? DigitProducts.product(getExponents()) : BigInteger.valueOf(total);
+    }
+
+    @Override
+    public String toString() {
+        return getProduct() + " (" + digitSequence + ")";
+    }
+
+    private int[] getExponents() {
+        if (exponents == null) {
+            // A result without digits is the empty product
+            exponents = DigitProducts.exponents(digitSequence == null ? "" : digitSequence);
+        }
+        return exponents;
     }
 
 
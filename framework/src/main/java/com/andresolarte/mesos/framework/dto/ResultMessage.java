@@ -0,0 +1,45 @@
+package com.andresolarte.mesos.framework.dto;
+
+import java.io.Serializable;
+
+/**
+ * The answer of a streaming worker to a {@link WorkMessage}: either the combined result of the batch, or the error
+ * it failed with.
+ */
+public class ResultMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String attemptId;
+    private byte[] result;
+    private String error;
+
+    private ResultMessage(String attemptId, byte[] result, String error) {
+        this.attemptId = attemptId;
+        this.result = result;
+        this.error = error;
+    }
+
+    public static ResultMessage finished(String attemptId, byte[] result) {
+        return new ResultMessage(attemptId, result, null);
+    }
+
+    public static ResultMessage failed(String attemptId, String error) {
+        return new ResultMessage(attemptId, null, error);
+    }
+
+    public String getAttemptId() {
+        return attemptId;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    public byte[] getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
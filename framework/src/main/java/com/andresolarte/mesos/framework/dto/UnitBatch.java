@@ -0,0 +1,23 @@
+package com.andresolarte.mesos.framework.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Several work units of any job sent to a slave as a single task. The slave works through them in order and answers
+ * with their combined result.
+ */
+public class UnitBatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<? extends Serializable> units;
+
+    public UnitBatch(List<? extends Serializable> units) {
+        this.units = units;
+    }
+
+    public List<? extends Serializable> getUnits() {
+        return units;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.andresolarte.mesos.framework.dto;
+
+import java.io.Serializable;
+
+/**
+ * A batch of work units pushed to a streaming worker as a framework message, instead of being launched as a task.
+ */
+public class WorkMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String attemptId;
+    private String jobName;
+    private int parallelism;
+    private byte[] payload;
+
+    /**
+     * @param attemptId   identifies the batch in the answer
+     * @param parallelism the number of CPUs the batch may use
+     * @param payload     the units, encoded the way a task would carry them
+     */
+    public WorkMessage(String attemptId, String jobName, int parallelism, byte[] payload) {
+        this.attemptId = attemptId;
+        this.jobName = jobName;
+        this.parallelism = parallelism;
+        this.payload = payload;
+    }
+
+    public String getAttemptId() {
+        return attemptId;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+}
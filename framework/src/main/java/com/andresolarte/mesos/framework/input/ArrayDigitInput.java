@@ -0,0 +1,27 @@
+package com.andresolarte.mesos.framework.input;
+
+import java.util.Arrays;
+
+/**
+ * Digits held on the heap, for small inputs such as the built in example.
+ */
+public class ArrayDigitInput implements DigitInput {
+    private final byte[] digits;
+
+    public ArrayDigitInput(String input) {
+        this.digits = new byte[input.length()];
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = (byte) Character.getNumericValue(input.charAt(i));
+        }
+    }
+
+    @Override
+    public long length() {
+        return digits.length;
+    }
+
+    @Override
+    public byte[] read(long offset, int length) {
+        return Arrays.copyOfRange(digits, (int) offset, (int) offset + length);
+    }
+}
@@ -0,0 +1,20 @@
+package com.andresolarte.mesos.framework.input;
+
+/**
+ * A sequence of decimal digits the coordinator cuts into tasks.
+ * Offsets are longs so that inputs can be larger than what fits in a Java array.
+ */
+public interface DigitInput {
+
+    /**
+     * @return the number of digits in the input
+     */
+    long length();
+
+    /**
+     * Copies {@code length} digits starting at {@code offset} into a new array, one digit (0 to 9) per byte.
+     *
+     * @throws IllegalArgumentException if the range holds something other than a digit
+     */
+    byte[] read(long offset, int length);
+}
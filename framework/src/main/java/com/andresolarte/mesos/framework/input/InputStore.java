@@ -0,0 +1,37 @@
+package com.andresolarte.mesos.framework.input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The inputs staged on this slave, for requests that only carry an input ID and a range.
+ * <p>
+ * The Scheduler lists the input file as a URI of the Executor command, so the Mesos fetcher copies it into the
+ * Executor sandbox (the working directory) once, before the Executor starts. Each input is mapped the first time a
+ * task asks for it and then shared by every task the Executor runs. Inputs can also be read from a directory given
+ * with the {@code executor.inputDir} system property.
+ */
+public class InputStore {
+
+    private static final Map<String, MappedDigitInput> INPUTS = new ConcurrentHashMap<>();
+
+    public static byte[] read(String inputId, long offset, int length) {
+        return INPUTS.computeIfAbsent(inputId, InputStore::open).read(offset, length);
+    }
+
+    private static MappedDigitInput open(String inputId) {
+        File file = new File(inputId);
+        String inputDir = System.getProperty("executor.inputDir");
+        if (!file.exists() && inputDir != null) {
+            file = new File(inputDir, inputId);
+        }
+        try {
+            return new MappedDigitInput(file.getPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Input " + inputId + " is not staged on this slave", e);
+        }
+    }
+}
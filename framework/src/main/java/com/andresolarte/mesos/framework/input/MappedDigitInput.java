@@ -0,0 +1,108 @@
+package com.andresolarte.mesos.framework.input;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Digits read from a file of ASCII digits (optionally ending with a line break), memory mapped so that the input
+ * never sits on the heap. The file is mapped in regions of up to 1 GB, each one mapped the first time a slice
+ * touches it, and the digits are validated as slices are read. Opening the input only reads its size, so it
+ * costs the same whatever the file size.
+ * <p>
+ * Slices are read with absolute gets, so any number of tasks can read the same input at once.
+ */
+public class MappedDigitInput implements DigitInput, AutoCloseable {
+    private static final int REGION_BITS = 30;
+    private static final long REGION_SIZE = 1L << REGION_BITS;
+
+    private final String path;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long length;
+    private final AtomicReferenceArray<MappedByteBuffer> regions;
+
+    public MappedDigitInput(String path) throws IOException {
+        this.path = path;
+        this.file = new RandomAccessFile(path, "r");
+        this.channel = file.getChannel();
+        this.length = trimmedLength();
+        this.regions = new AtomicReferenceArray<>((int) ((length + REGION_SIZE - 1) >>> REGION_BITS));
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public byte[] read(long offset, int length) {
+        if (offset < 0 || offset + length > this.length) {
+            throw new IndexOutOfBoundsException("Range " + offset + "+" + length + " is outside of " + path);
+        }
+        byte[] digits = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long position = offset + copied;
+            MappedByteBuffer region = region((int) (position >>> REGION_BITS));
+            int index = (int) (position & (REGION_SIZE - 1));
+            int count = Math.min(length - copied, region.limit() - index);
+            for (int i = 0; i < count; i++) {
+                int digit = region.get(index + i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new IllegalArgumentException("Not a digit at offset " + (position + i) + " of " + path);
+                }
+                digits[copied + i] = (byte) digit;
+            }
+            copied += count;
+        }
+        return digits;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Maps the region the first time it is needed. Two readers may race to map it, then one mapping wins and the
+     * other is left to the garbage collector.
+     */
+    private MappedByteBuffer region(int index) {
+        MappedByteBuffer region = regions.get(index);
+        if (region == null) {
+            long start = (long) index << REGION_BITS;
+            try {
+                region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, length - start));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to map " + path + " at offset " + start, e);
+            }
+            if (!regions.compareAndSet(index, null, region)) {
+                region = regions.get(index);
+            }
+        }
+        return region;
+    }
+
+    /**
+     * The file size, minus any line break or spaces at the very end.
+     */
+    private long trimmedLength() throws IOException {
+        long size = channel.size();
+        while (size > 0) {
+            file.seek(size - 1);
+            int last = file.read();
+            if (last != '\n' && last != '\r' && last != ' ' && last != '\t') {
+                break;
+            }
+            size--;
+        }
+        return size;
+    }
+}
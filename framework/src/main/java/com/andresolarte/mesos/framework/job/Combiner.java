@@ -0,0 +1,18 @@
+package com.andresolarte.mesos.framework.job;
+
+import java.io.Serializable;
+
+/**
+ * Merges the results of two runs of consecutive units into one. Has to be associative, so that a task batching many
+ * units can pre-reduce them in the Executor and still end up with the same result as the Scheduler would.
+ *
+ * @param <R> the result of a unit
+ */
+public interface Combiner<R extends Serializable> {
+
+    /**
+     * @param left  the result of the earlier units
+     * @param right the result of the units right after them
+     */
+    R combine(R left, R right);
+}
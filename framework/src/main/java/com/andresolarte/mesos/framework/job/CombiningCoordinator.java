@@ -0,0 +1,119 @@
+package com.andresolarte.mesos.framework.job;
+
+import com.andresolarte.mesos.framework.util.ConcurrentBitSet;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Default {@link JobCoordinator}: keeps the result of every task, by its first unit, and combines them in unit order
+ * when asked for the final result. Duplicate results, e.g. from a speculative copy of a task, are dropped.
+ * A splitter that is {@link AutoCloseable} is closed with the coordinator.
+ */
+public class CombiningCoordinator<U extends Serializable, R extends Serializable> implements JobCoordinator<U, R> {
+    private final static Logger LOGGER = Logger.getLogger(CombiningCoordinator.class.getName());
+
+    private final Splitter<U> splitter;
+    private final Combiner<R> combiner;
+    private ConcurrentBitSet finished;
+    private final AtomicInteger finishedCount = new AtomicInteger();
+    private AtomicReferenceArray<R> results;
+
+    public CombiningCoordinator(Splitter<U> splitter, Combiner<R> combiner) {
+        this.splitter = splitter;
+        this.combiner = combiner;
+    }
+
+    @Override
+    public int split(int cores) {
+        int units = splitter.split(cores);
+        finished = new ConcurrentBitSet(units);
+        results = new AtomicReferenceArray<>(units);
+        return units;
+    }
+
+    @Override
+    public boolean isSplit() {
+        return finished != null;
+    }
+
+    @Override
+    public int getUnitCount() {
+        return splitter.getUnitCount();
+    }
+
+    @Override
+    public U createUnit(int index) {
+        return splitter.createUnit(index);
+    }
+
+    @Override
+    public boolean ingestResult(int firstUnit, int count, R result) {
+        int newlyFinished = 0;
+        for (int unit = firstUnit; unit < firstUnit + count; unit++) {
+            if (finished.set(unit)) {
+                newlyFinished++;
+            }
+        }
+        if (newlyFinished == 0) {
+            return false;
+        }
+        results.set(firstUnit, result);
+        finishedCount.addAndGet(newlyFinished);
+        return true;
+    }
+
+    @Override
+    public boolean isFinished(int unit) {
+        return finished.get(unit);
+    }
+
+    @Override
+    public int getFinishedCount() {
+        return finishedCount.get();
+    }
+
+    @Override
+    public boolean isComplete() {
+        return finished != null && finishedCount.get() == finished.size();
+    }
+
+    @Override
+    public boolean recover() {
+        return false;
+    }
+
+    /**
+     * @return the combination of the results received so far, in unit order, or null if there are none
+     */
+    @Override
+    public R getResult() {
+        R combined = null;
+        for (int i = 0; i < results.length(); i++) {
+            R result = results.get(i);
+            if (result != null) {
+                combined = combined == null ? result : combiner.combine(combined, result);
+            }
+        }
+        return combined;
+    }
+
+    @Override
+    public void outputResult() {
+        LOGGER.info("================= DONE. Result: " + getResult());
+    }
+
+    @Override
+    public void close() {
+        if (splitter instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) splitter).close();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Unable to close the splitter of the job", e);
+            }
+        }
+    }
+}
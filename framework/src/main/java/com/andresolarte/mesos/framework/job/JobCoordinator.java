@@ -0,0 +1,62 @@
+package com.andresolarte.mesos.framework.job;
+
+import java.io.Serializable;
+
+/**
+ * The Scheduler side of a job: cuts it into units, and folds the results of the tasks into the final result.
+ * The Scheduler only ever talks to a job through this interface.
+ *
+ * @param <U> the work unit sent to the Executors
+ * @param <R> the result of a unit, or of a run of consecutive units
+ */
+public interface JobCoordinator<U extends Serializable, R extends Serializable> extends Splitter<U> {
+
+    /**
+     * Takes in the result of a task covering the units [firstUnit, firstUnit + count).
+     * Safe to call from any thread, and results for units that already have one are dropped.
+     *
+     * @return false if the result was a duplicate
+     */
+    boolean ingestResult(int firstUnit, int count, R result);
+
+    boolean isFinished(int unit);
+
+    int getFinishedCount();
+
+    /**
+     * Units can also be finished without a result of their own, once the job knows they can't change its result.
+     * The Scheduler then stops handing them out, and kills their tasks.
+     *
+     * @return how many units were finished that way so far
+     */
+    default int getPrunedCount() {
+        return 0;
+    }
+
+    boolean isComplete();
+
+    /**
+     * @return the result of the job so far, or null if there is none yet
+     */
+    R getResult();
+
+    /**
+     * Takes over the progress of an earlier run of the same job, if the job keeps any. Called before
+     * {@link #split(int)}.
+     *
+     * @return true if the job was recovered, in which case it is already split
+     */
+    boolean recover();
+
+    /**
+     * Reports the final result.
+     */
+    void outputResult();
+
+    /**
+     * Releases what the job holds open, such as a journal, once it is over: after {@link #outputResult()} when it
+     * completed, or when it was given up on. The result can still be read afterwards.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,69 @@
+package com.andresolarte.mesos.framework.job;
+
+import com.andresolarte.mesos.framework.dto.UnitBatch;
+import com.andresolarte.mesos.framework.input.DigitInput;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A kind of job the framework can run over a digit input: how it is split, what the Executors do with each unit and
+ * how results are combined. Jobs are looked up by name in the {@link JobRegistry}.
+ * <p>
+ * Only {@link #createSplitter}, {@link #createKernel} and {@link #getCombiner} have to be written for a new job; the
+ * Scheduler then folds the results with a {@link CombiningCoordinator}.
+ *
+ * @param <U> the work unit sent to the Executors
+ * @param <R> the result of a unit, or of a run of consecutive units
+ */
+public interface JobDefinition<U extends Serializable, R extends Serializable> {
+
+    String getName();
+
+    /**
+     * @param input         the digits to work on, or null for the job's built in example
+     * @param sharedInputId if not null, the ID under which the input is staged on the slaves
+     */
+    Splitter<U> createSplitter(DigitInput input, String sharedInputId);
+
+    /**
+     * @param parallelism the number of CPUs the task was given
+     */
+    WorkerKernel<U, R> createKernel(int parallelism);
+
+    Combiner<R> getCombiner();
+
+    default JobCoordinator<U, R> createCoordinator(DigitInput input, String sharedInputId) {
+        return new CombiningCoordinator<>(createSplitter(input, sharedInputId), getCombiner());
+    }
+
+    /**
+     * The coordinator of a job submitted to a running Scheduler, see {@link com.andresolarte.mesos.framework.JobRun}.
+     *
+     * @param parameters the settings the job was submitted with, which take the place of the system properties the
+     *                   job would otherwise read
+     */
+    default JobCoordinator<U, R> createCoordinator(DigitInput input, String sharedInputId, Properties parameters) {
+        return createCoordinator(input, sharedInputId);
+    }
+
+    /**
+     * What a task carries for the units: the unit itself when there's only one.
+     */
+    default Serializable toPayload(List<U> units) {
+        return units.size() == 1 ? units.get(0) : new UnitBatch(units);
+    }
+
+    /**
+     * Undoes {@link #toPayload(List)} in the Executor.
+     */
+    @SuppressWarnings("unchecked")
+    default List<U> fromPayload(Object payload) {
+        if (payload instanceof UnitBatch) {
+            return (List<U>) ((UnitBatch) payload).getUnits();
+        }
+        return Collections.singletonList((U) payload);
+    }
+}
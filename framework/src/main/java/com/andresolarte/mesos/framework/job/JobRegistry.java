@@ -0,0 +1,42 @@
+package com.andresolarte.mesos.framework.job;
+
+import com.andresolarte.mesos.framework.logic.LargestProductJob;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The jobs the framework knows about, by name. The largest product job is built in; more can be added with
+ * {@link #register(JobDefinition)}, or listed in {@code META-INF/services/com.andresolarte.mesos.framework.job.JobDefinition}
+ * on the classpath of both the Scheduler and the Executor.
+ */
+public class JobRegistry {
+    public static final String DEFAULT_JOB = LargestProductJob.NAME;
+
+    private static final Map<String, JobDefinition<?, ?>> JOBS = new ConcurrentHashMap<>();
+
+    static {
+        register(new LargestProductJob());
+        for (JobDefinition<?, ?> job : ServiceLoader.load(JobDefinition.class)) {
+            register(job);
+        }
+    }
+
+    public static void register(JobDefinition<?, ?> job) {
+        JOBS.put(job.getName(), job);
+    }
+
+    /**
+     * @param name the job name, or null for {@link #DEFAULT_JOB}
+     */
+    @SuppressWarnings("unchecked")
+    public static <U extends Serializable, R extends Serializable> JobDefinition<U, R> get(String name) {
+        JobDefinition<?, ?> job = JOBS.get(name == null ? DEFAULT_JOB : name);
+        if (job == null) {
+            throw new IllegalArgumentException("Unknown job " + name + ", known jobs are " + JOBS.keySet());
+        }
+        return (JobDefinition<U, R>) job;
+    }
+}
@@ -0,0 +1,154 @@
+package com.andresolarte.mesos.framework.job;
+
+import com.andresolarte.mesos.framework.metrics.FrameworkMetrics;
+import com.andresolarte.mesos.framework.util.ByteStringUtils;
+import com.andresolarte.mesos.framework.util.ResourceUtils;
+import org.apache.mesos.ExecutorDriver;
+import org.apache.mesos.Protos;
+
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs one task in the Executor: the units it carries go through the job's {@link WorkerKernel} in order, and their
+ * results are folded with the job's {@link Combiner}, so a batch of units answers with a single result. The result is
+ * sent back inside the TASK_FINISHED status update.
+ * <p>
+ * The job is named by the {@value #JOB_LABEL} label of the task, and defaults to {@link JobRegistry#DEFAULT_JOB}.
+ * A task with the {@value #STREAMING_LABEL} label carries no work: it keeps the Executor running, and work comes in
+ * as framework messages, see {@link #process(String, int, Object)}.
+ */
+public class JobTask implements Runnable {
+    private final static Logger LOGGER = Logger.getLogger(JobTask.class.getName());
+    public static final String JOB_LABEL = "job";
+    public static final String STREAMING_LABEL = "streaming";
+
+    private final Protos.TaskInfo task;
+    private final ExecutorDriver driver;
+    private final int parallelism;
+    private final BooleanSupplier finishing;
+
+    public JobTask(Protos.TaskInfo task, ExecutorDriver driver) {
+        this(task, driver, () -> true);
+    }
+
+    /**
+     * @param finishing asked right before the final status update is sent; false drops the update, e.g. because the
+     *                  task was killed in the meantime and the Executor reports that instead
+     */
+    public JobTask(Protos.TaskInfo task, ExecutorDriver driver, BooleanSupplier finishing) {
+        this.task = task;
+        this.driver = driver;
+        this.parallelism = Math.max(1, (int) ResourceUtils.getScalar(task, "cpus"));
+        this.finishing = finishing;
+    }
+
+    /**
+     * The labels that tell the Executor which job a task belongs to.
+     */
+    public static Protos.Labels labels(String jobName) {
+        return Protos.Labels.newBuilder()
+                .addLabels(Protos.Label.newBuilder().setKey(JOB_LABEL).setValue(jobName))
+                .build();
+    }
+
+    /**
+     * The labels of a long running task that takes its work as framework messages.
+     */
+    public static Protos.Labels streamingLabels(String jobName) {
+        return Protos.Labels.newBuilder(labels(jobName))
+                .addLabels(Protos.Label.newBuilder().setKey(STREAMING_LABEL).setValue("true"))
+                .build();
+    }
+
+    public static boolean isStreaming(Protos.TaskInfo task) {
+        return "true".equals(label(task, STREAMING_LABEL));
+    }
+
+    private static String label(Protos.TaskInfo task, String key) {
+        for (Protos.Label label : task.getLabels().getLabelsList()) {
+            if (key.equals(label.getKey())) {
+                return label.getValue();
+            }
+        }
+        return null;
+    }
+
+    public void run() {
+
+        Protos.TaskStatus status = Protos.TaskStatus.newBuilder()
+                .setTaskId(task.getTaskId())
+                .setState(Protos.TaskState.TASK_RUNNING).build();
+
+        driver.sendStatusUpdate(status);
+        try {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Running task " + task.getTaskId().getValue());
+            }
+
+            long started = System.nanoTime();
+            Serializable result = process(label(task, JOB_LABEL), parallelism,
+                    ByteStringUtils.fromByteString(task.getData()));
+            FrameworkMetrics.get().taskRan(System.nanoTime() - started);
+
+            status = Protos.TaskStatus.newBuilder()
+                    .setTaskId(task.getTaskId())
+                    .setData(ByteStringUtils.toByteString(result))
+                    .setState(Protos.TaskState.TASK_FINISHED).build();
+        } catch (InterruptedException e) {
+            // The task was killed, the Executor reports it
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Interrupted task " + task.getTaskId().getValue());
+            }
+            return;
+        } catch (Exception e) {
+            status = Protos.TaskStatus.newBuilder()
+                    .setTaskId(task.getTaskId())
+                    .setMessage(e.getMessage() + "\n" + getStringFromException(e))
+                    .setState(Protos.TaskState.TASK_FAILED).build();
+        }
+
+        if (finishing.getAsBoolean()) {
+            driver.sendStatusUpdate(status);
+        }
+
+    }
+
+    /**
+     * Works through the units of a task payload in order, and combines their results.
+     *
+     * @param jobName     the job the units belong to, or null for the default one
+     * @param parallelism the number of CPUs the units may use
+     */
+    public static Serializable process(String jobName, int parallelism, Object payload) throws InterruptedException {
+        return process(JobRegistry.get(jobName), parallelism, payload);
+    }
+
+    private static <U extends Serializable, R extends Serializable> R process(JobDefinition<U, R> job, int parallelism,
+                                                                              Object payload)
+            throws InterruptedException {
+        List<U> units = job.fromPayload(payload);
+        if (units.isEmpty()) {
+            throw new IllegalArgumentException("No work units in the payload");
+        }
+        WorkerKernel<U, R> kernel = job.createKernel(parallelism);
+        Combiner<R> combiner = job.getCombiner();
+        R combined = null;
+        for (U unit : units) {
+            R result = kernel.process(unit);
+            combined = combined == null ? result : combiner.combine(combined, result);
+        }
+        return combined;
+    }
+
+    private String getStringFromException(Exception ex) {
+        StringWriter errors = new StringWriter();
+        ex.printStackTrace(new PrintWriter(errors));
+        return errors.toString();
+    }
+}
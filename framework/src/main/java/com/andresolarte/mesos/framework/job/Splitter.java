@@ -0,0 +1,38 @@
+package com.andresolarte.mesos.framework.job;
+
+import java.io.Serializable;
+
+/**
+ * Cuts a job into work units. Runs in the Scheduler.
+ *
+ * @param <U> the work unit sent to the Executors
+ */
+public interface Splitter<U extends Serializable> {
+
+    /**
+     * Decides how the job is cut, sized for the number of task slots currently on offer.
+     * This is called once, before the first unit is created.
+     *
+     * @return the number of units
+     */
+    int split(int cores);
+
+    boolean isSplit();
+
+    int getUnitCount();
+
+    /**
+     * Once the job is split, this may be called from a thread other than the Scheduler's, to prepare the units of
+     * the next tasks ahead of time.
+     */
+    U createUnit(int index);
+
+    /**
+     * The part of the input a unit reads, used to send it to a slave that holds that part already.
+     *
+     * @return the first and the last index of the input read by the unit, or null if units don't map to the input
+     */
+    default long[] getInputRange(int index) {
+        return null;
+    }
+}
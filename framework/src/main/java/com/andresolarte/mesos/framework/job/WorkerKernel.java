@@ -0,0 +1,17 @@
+package com.andresolarte.mesos.framework.job;
+
+import java.io.Serializable;
+
+/**
+ * Processes one work unit. Runs in the Executor.
+ * <p>
+ * Long running kernels should check {@link Thread#isInterrupted()} now and then, and throw
+ * {@link InterruptedException} when the task is killed.
+ *
+ * @param <U> the work unit
+ * @param <R> the result of a unit
+ */
+public interface WorkerKernel<U extends Serializable, R extends Serializable> {
+
+    R process(U unit) throws InterruptedException;
+}
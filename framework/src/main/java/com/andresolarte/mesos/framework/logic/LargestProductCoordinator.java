@@ -2,24 +2,93 @@ package com.andresolarte.mesos.framework.logic;
 
 import com.andresolarte.mesos.framework.dto.Request;
 import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.input.ArrayDigitInput;
+import com.andresolarte.mesos.framework.input.DigitInput;
+import com.andresolarte.mesos.framework.job.JobCoordinator;
+import com.andresolarte.mesos.framework.util.DigitProducts;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * This object will slice up the problem into multiple tasks.
  * It will also inject the results as they start to come in from the slaves, looking for the result with the highest total.
  * This will run as part of the Scheduler
+ * <p>
+ * Windows are {@code largestproduct.window} digits wide (default 13), and may be far wider than a long can hold
+ * the product of, see {@link com.andresolarte.mesos.framework.dto.Result}.
+ * <p>
+ * The job reports the best {@code coordinator.topResults} windows (default 1). Every task then answers with the best
+ * that many windows of its chunk, and the {@link ResultReducer} ranks them all, so two of the best windows may well
+ * come from the same chunk.
+ * <p>
+ * When the system property {@code coordinator.journal} names a file, every result taken in is also appended to a
+ * {@link ResultJournal} there, and {@link #recover()} picks the job up from it after a restart.
+ * <p>
+ * When the system property {@code coordinator.cache} names a file, the results of the tasks are also kept in a
+ * {@link ResultCache} there. Once the tasks are planned, every task whose digits are in the cache for this window
+ * takes its result from there instead of being run. This reads the whole input once on the Scheduler.
+ * <p>
+ * Every request carries the product of the worst result the job still keeps, once it keeps as many as it reports,
+ * so the Executors can skip the parts of a chunk that can't reach it, see {@link LargestProductFinder}. With the
+ * system property {@code coordinator.prune} set, the digits of every task are also counted once they are planned,
+ * which bounds the best product the task can find: the product of its largest digits. A task whose bound falls
+ * below the worst result kept is then finished without being run, and killed if it is running. This reads the whole
+ * input once on the Scheduler too.
  */
-public class LargestProductCoordinator {
+public class LargestProductCoordinator implements JobCoordinator<Request, Result> {
 
     private final static Logger LOGGER = Logger.getLogger(LargestProductCoordinator.class.getName());
+    public static final int DEFAULT_WINDOW = Integer.getInteger("largestproduct.window", 13);
 
-    private int[] digits;
-    private Result highestResult = null;
-    private int numberOfDigits = 13;
-    private int digitsPerTask = 20; //13*1.5 rounded up to ensure enough overlap to cover all cases with maximum parallelism
-    private int totalTasks;
+    private final int numberOfDigits;
+    private final TaskPlanner taskPlanner;
+    private DigitInput input;
+    private String sharedInputId;
+    private final int topResults;
+    private TaskPlan taskPlan;
+    private ResultReducer resultReducer;
+    private final String journalPath;
+    private ResultJournal journal;
+    //Hash of the whole input for the journal, worked out once, when first needed
+    private long fingerprint;
+    private boolean fingerprinted = false;
+    private final ResultCache cache = ResultCache.open(System.getProperty("coordinator.cache"));
+    //Cache key of each task, once looked up
+    private String[] cacheKeys;
+    private final boolean prune = Boolean.getBoolean("coordinator.prune");
+    //Bound on the product of each task still to be run, as exponents, while pruning
+    private int[][] bounds;
+    //The worst result kept the last time the tasks were pruned
+    private Result prunedBelow;
+    private final AtomicInteger pruned = new AtomicInteger();
+
+    public LargestProductCoordinator() {
+        this(DEFAULT_WINDOW, new TaskPlanner());
+    }
+
+    public LargestProductCoordinator(int numberOfDigits, TaskPlanner taskPlanner) {
+        this(numberOfDigits, Integer.getInteger("coordinator.topResults", 1), taskPlanner,
+                System.getProperty("coordinator.journal"));
+    }
+
+    /**
+     * @param journalPath where to journal the results, or null not to
+     */
+    public LargestProductCoordinator(int numberOfDigits, int topResults, TaskPlanner taskPlanner,
+                                     String journalPath) {
+        this.numberOfDigits = numberOfDigits;
+        this.topResults = topResults;
+        this.taskPlanner = taskPlanner;
+        this.journalPath = journalPath;
+    }
 
     public void setupTasks() {
         String input = "73167176531330624919225119674426574742355349194934" +
@@ -42,38 +111,370 @@ public class LargestProductCoordinator {
                 "84580156166097919133875499200524063689912560717606" +
                 "05886116467109405077541002256983155200055935729725" +
                 "71636269561882670428252483600823257530420752963450";
-        digits = input.chars()
-                .map(Character::getNumericValue).toArray();
+        setupTasks(new ArrayDigitInput(input));
+    }
+
+    /**
+     * Uses the given digits as the input. Only the slices handed out to tasks are ever read from it.
+     */
+    public void setupTasks(DigitInput input) {
+        setupTasks(input, null);
+    }
+
+    /**
+     * @param sharedInputId if not null, the input is staged on every slave under this ID, and requests only carry
+     *                      the range of the input they cover instead of the digits themselves
+     */
+    public void setupTasks(DigitInput input, String sharedInputId) {
+        this.input = input;
+        this.sharedInputId = sharedInputId;
+        LOGGER.info("Input has " + input.length() + " digits");
+    }
+
+    /**
+     * Cuts the input into tasks, sized for the number of task slots currently on offer.
+     * This has to be called once, before the first request is created.
+     */
+    public TaskPlan planTasks(int cores) {
+        taskPlan = taskPlanner.plan(input.length(), numberOfDigits, cores);
+        resultReducer = new ResultReducer(taskPlan.getTaskCount(), topResults);
+        LOGGER.info("Planned tasks for " + cores + " cores: " + taskPlan);
+        if (journalPath != null) {
+            try {
+                journal = ResultJournal.create(Paths.get(journalPath), taskPlan, getFingerprint(), topResults);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to create the journal " + journalPath + ", continuing without it", e);
+            }
+        }
+        resolveFromCache();
+        computeBounds();
+        return taskPlan;
+    }
+
+    /**
+     * Takes over the plan and the results of an earlier run of the same job from the journal, if there is one.
+     * This has to be called before the tasks are planned.
+     *
+     * @return true if the job was recovered, in which case only the missing tasks have to be run
+     */
+    @Override
+    public boolean recover() {
+        if (journalPath == null || isPlanned()) {
+            return false;
+        }
+        Path path = Paths.get(journalPath);
+        // Hashing reads the whole input, which isn't worth it without a journal to resume
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try {
+            long fingerprint = getFingerprint();
+            TaskPlan plan = ResultJournal.readPlan(path, input.length(), numberOfDigits, fingerprint);
+            if (plan == null) {
+                return false;
+            }
+            ResultReducer reducer = new ResultReducer(plan.getTaskCount(), topResults);
+            int records = ResultJournal.replay(path, reducer);
+            journal = ResultJournal.append(path, plan, fingerprint, topResults);
+            taskPlan = plan;
+            resultReducer = reducer;
+            LOGGER.info("Recovered " + reducer.getFinishedCount() + " of " + plan.getTaskCount() +
+                    " finished tasks from " + records + " journal records: " + plan);
+            resolveFromCache();
+            computeBounds();
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to recover from the journal " + journalPath + ", starting over", e);
+            return false;
+        }
+    }
+
+    private long getFingerprint() {
+        if (!fingerprinted) {
+            fingerprint = ResultJournal.fingerprint(input);
+            fingerprinted = true;
+        }
+        return fingerprint;
+    }
+
+    @Override
+    public int split(int cores) {
+        return planTasks(cores).getTaskCount();
+    }
+
+    public boolean isPlanned() {
+        return taskPlan != null;
+    }
+
+    @Override
+    public boolean isSplit() {
+        return isPlanned();
+    }
+
+    public TaskPlan getTaskPlan() {
+        return taskPlan;
+    }
+
+    /**
+     * Takes in the result of a task covering the requests [firstRequest, firstRequest + count).
+     * Safe to call from any thread, and results for requests that already have one are dropped.
+     *
+     * @return false if the result was a duplicate
+     */
+    @Override
+    public boolean ingestResult(int firstRequest, int count, Result result) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Received result with total: " + result.getProduct());
+        }
+        boolean ingested = resultReducer.ingest(firstRequest, count, result);
+        if (ingested && journal != null) {
+            journal(firstRequest, count, result);
+        }
+        // A task covering several requests has a single result for all of them, which can't be cached per request.
+        // Neither can a result without digits, which may only say that nothing in the task reached the floor
+        if (ingested && count == 1 && cacheKeys != null && cacheKeys[firstRequest] != null &&
+                result.getDigitSequence() != null) {
+            cache.put(cacheKeys[firstRequest], result);
+        }
+        if (ingested) {
+            prune();
+        }
+        return ingested;
+    }
+
+    /**
+     * Bounds the product of every task that has yet to be run by its largest digits, and prunes the tasks that
+     * already can't make it.
+     */
+    private void computeBounds() {
+        if (!prune) {
+            return;
+        }
+        int[][] taskBounds = new int[taskPlan.getTaskCount()][];
+        int[] counts = new int[10];
+        for (int request = 0; request < taskBounds.length; request++) {
+            if (resultReducer.isFinished(request)) {
+                continue;
+            }
+            long startIndex = taskPlan.getStartIndex(request);
+            byte[] digits = input.read(startIndex, (int) (taskPlan.getEndIndex(request) - startIndex));
+            Arrays.fill(counts, 0);
+            DigitProducts.count(digits, 0, digits.length, counts);
+            taskBounds[request] = DigitProducts.upperBound(counts, numberOfDigits);
+        }
+        bounds = taskBounds;
+        prune();
+    }
+
+    /**
+     * Finishes the tasks whose bound is below the worst result kept, whenever that result changes. A task whose
+     * bound equals it is still run, as it may win a tie by coming first.
+     */
+    private synchronized void prune() {
+        Result threshold = resultReducer.getThreshold();
+        if (bounds == null || threshold == null || threshold == prunedBelow) {
+            return;
+        }
+        prunedBelow = threshold;
+        int[] floor = floorOf(threshold);
+        if (floor == null) {
+            return;
+        }
+        int count = 0;
+        for (int request = 0; request < bounds.length; request++) {
+            if (bounds[request] != null && DigitProducts.compare(bounds[request], floor) < 0) {
+                bounds[request] = null;
+                if (resultReducer.markFinished(request, 1)) {
+                    count++;
+                }
+            }
+        }
+        if (count > 0) {
+            pruned.addAndGet(count);
+            LOGGER.info("Pruned " + count + " tasks that can't beat " + threshold + ", " + pruned.get() +
+                    " so far");
+        }
+    }
+
+    /**
+     * @return the product windows have to reach to make it into the result, as exponents, or null if any window may
+     */
+    private int[] getFloor() {
+        Result threshold = resultReducer.getThreshold();
+        return threshold == null ? null : floorOf(threshold);
+    }
+
+    private static int[] floorOf(Result threshold) {
+        if (threshold.getDigitSequence() == null) {
+            return null;
+        }
+        int[] floor = DigitProducts.exponents(threshold.getDigitSequence());
+        // Every window reaches a product of zero
+        return floor[0] > 0 ? null : floor;
+    }
+
+    @Override
+    public int getPrunedCount() {
+        return pruned.get();
+    }
+
+    /**
+     * Takes the results of the tasks whose digits are in the cache, so that they are never launched.
+     */
+    private void resolveFromCache() {
+        if (cache == null) {
+            return;
+        }
+        cacheKeys = new String[taskPlan.getTaskCount()];
+        int hits = 0;
+        for (int request = 0; request < cacheKeys.length; request++) {
+            if (resultReducer.isFinished(request)) {
+                continue;
+            }
+            long startIndex = taskPlan.getStartIndex(request);
+            int length = (int) (taskPlan.getEndIndex(request) - startIndex);
+            byte[] digits = input.read(startIndex, length);
+            cacheKeys[request] = ResultCache.key(LargestProductJob.NAME, numberOfDigits, digits);
+            Result result = fromCache(cacheKeys[request], length - numberOfDigits + 1);
+            if (result != null && resultReducer.ingest(request, 1, result)) {
+                hits++;
+                if (journal != null) {
+                    journal(request, 1, result);
+                }
+            }
+        }
+        LOGGER.info("Took the results of " + hits + " of " + cacheKeys.length + " tasks from the result cache");
+    }
 
-        float numberOfDigitsFloat = numberOfDigits;
-        float totalTasksFloat = digits.length / numberOfDigitsFloat;
-        this.totalTasks = (int) Math.ceil(totalTasksFloat);
-        LOGGER.info("Total number of tasks for the input: " + totalTasks + " " + totalTasksFloat);
+    /**
+     * @param windows the number of windows of the chunk
+     * @return the cached result of the chunk, if it holds as many of its best windows as the job keeps
+     */
+    private Result fromCache(String key, int windows) {
+        Result result = cache.get(key);
+        if (result == null || topResults == 1) {
+            return result;
+        }
+        return result.isTopResults() && result.getWindows().size() >= Math.min(topResults, windows) ? result : null;
     }
 
-    public void ingestResult(Result result) {
-        LOGGER.info("Received result with total: " + result.getTotal());
-        //We received a result, let's see if it's higher than the one we currently hold.
-        if (highestResult == null || result.getTotal() > highestResult.getTotal()) {
-            highestResult = result;
+    /**
+     * A journal that fails is dropped: the job goes on, it just can't be resumed anymore.
+     */
+    private synchronized void journal(int firstRequest, int count, Result result) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.append(firstRequest, count, result);
+            if (journal.isSnapshotDue()) {
+                journal.snapshot();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write to the journal " + journalPath + ", disabling it", e);
+            closeJournal();
+        }
+    }
+
+    /**
+     * Closes the journal, which keeps what was written so far for a later run to resume.
+     */
+    @Override
+    public void close() {
+        closeJournal();
+    }
+
+    private synchronized void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to close the journal " + journalPath, e);
         }
+        journal = null;
     }
 
+    @Override
+    public boolean isComplete() {
+        return resultReducer != null && resultReducer.isComplete();
+    }
+
+    /**
+     * @return true if a result covering the request has already been taken in
+     */
+    @Override
+    public boolean isFinished(int requestIndex) {
+        return resultReducer.isFinished(requestIndex);
+    }
+
+    public int getFinishedTasks() {
+        return resultReducer.getFinishedCount();
+    }
+
+    @Override
+    public int getFinishedCount() {
+        return getFinishedTasks();
+    }
+
+    @Override
+    public Result getResult() {
+        return resultReducer == null ? null : resultReducer.getBest();
+    }
+
+    /**
+     * @return the best windows received, best first
+     */
+    public List<Result> getTopResults() {
+        return resultReducer.getTop();
+    }
+
+    @Override
     public void outputResult() {
-        LOGGER.info("================= DONE. Highest result total received: " + highestResult.getTotal());
+        closeJournal();
+        Result best = resultReducer.getBest();
+        if (best == null || best.getDigitSequence() == null) {
+            LOGGER.info("================= DONE. No window of " + numberOfDigits + " digits fits in the " +
+                    input.length() + " digits of the input");
+            return;
+        }
+        LOGGER.info("================= DONE. Highest result total received: " + best.getProduct());
+        List<Result> results = resultReducer.getTop();
+        for (int i = 1; i < results.size(); i++) {
+            LOGGER.info("Result #" + (i + 1) + ": " + results.get(i).getProduct() +
+                    " (" + results.get(i).getDigitSequence() + ")");
+        }
+    }
+
+    @Override
+    public Request createUnit(int index) {
+        return createRequest(index);
     }
 
     public Request createRequest(int requestIndex) {
-        int startIndex = requestIndex * numberOfDigits;
-        int endIndex = startIndex + digitsPerTask;
-        if (endIndex > (digits.length - 1)) {
-            endIndex = digits.length - 1;
-        }
-        Request request = new Request(Arrays.copyOfRange(digits, startIndex, endIndex), numberOfDigits);
+        long startIndex = taskPlan.getStartIndex(requestIndex);
+        long endIndex = taskPlan.getEndIndex(requestIndex);
+        int length = (int) (endIndex - startIndex);
+        Request request = sharedInputId != null
+                ? new Request(sharedInputId, startIndex, length, numberOfDigits)
+                : new Request(input.read(startIndex, length), numberOfDigits);
+        request.setFloor(getFloor());
+        request.setTopResults(topResults);
         return request;
     }
 
+    @Override
+    public long[] getInputRange(int index) {
+        return new long[]{taskPlan.getStartIndex(index), taskPlan.getEndIndex(index) - 1};
+    }
+
     public int getTotalTasks() {
-        return totalTasks;
+        return taskPlan.getTaskCount();
+    }
+
+    @Override
+    public int getUnitCount() {
+        return getTotalTasks();
     }
 }
@@ -1,79 +1,142 @@
 package com.andresolarte.mesos.framework.logic;
 
-import com.andresolarte.mesos.framework.TestExecutor;
 import com.andresolarte.mesos.framework.dto.Request;
 import com.andresolarte.mesos.framework.dto.Result;
-import com.andresolarte.mesos.framework.util.ByteStringUtils;
-import org.apache.mesos.ExecutorDriver;
-import org.apache.mesos.Protos;
+import com.andresolarte.mesos.framework.input.InputStore;
+import com.andresolarte.mesos.framework.job.WorkerKernel;
+import com.andresolarte.mesos.framework.metrics.FrameworkMetrics;
+import com.andresolarte.mesos.framework.util.DigitProducts;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Optional;
-import java.util.logging.Logger;
-import java.util.stream.IntStream;
+import java.util.List;
 
 /**
- * This will do the actual calculation of a small slice of the problem. The result is sent back inside a status update.
- * This is invoked by the Executor class on each node.
+ * This will do the actual calculation of a small slice of the problem: the best window of a single request.
+ * This is invoked by a {@link com.andresolarte.mesos.framework.job.JobTask} in the Executor on each node.
+ * <p>
+ * Before a block of windows is scanned, the digits it covers may be counted: a block whose largest digits can't
+ * beat the best window found so far, or reach the floor of the request, is skipped. Counting costs a fraction of a
+ * scan, but on inputs where no block can be skipped it is still wasted, so after a block that had to be scanned the
+ * next check waits twice as many blocks as the last.
+ * <p>
+ * A request for the best {@code k} windows answers with the best one, and the next ones as its runners up. Blocks
+ * are then skipped against the last of the {@code k} windows found so far, once there are that many. Once a block
+ * was skipped with a floor, only the windows that reach the floor are reported, as the others may not be the next
+ * best of the chunk.
  */
-public class LargestProductFinder implements Runnable {
-    private final static Logger LOGGER = Logger.getLogger(TestExecutor.class.getName());
-
-    private final Protos.TaskInfo task;
-    private final ExecutorDriver driver;
-
-    public LargestProductFinder(Protos.TaskInfo task, ExecutorDriver driver) {
-        this.task = task;
-        this.driver = driver;
+public class LargestProductFinder implements WorkerKernel<Request, Result> {
+    //Number of windows scanned between checks for a kill request, per thread
+    private final static int WINDOWS_PER_BLOCK = 1 << 20;
+    //Chunks with fewer windows than this are scanned on a single thread, even when the task has more CPUs
+    private final static int PARALLEL_THRESHOLD = Integer.getInteger("finder.parallelThreshold", 1 << 21);
+
+    private final int parallelism;
+
+    /**
+     * @param parallelism the number of threads a large chunk may be scanned on
+     */
+    public LargestProductFinder(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
     }
 
-    public void run() {
-
-        Protos.TaskStatus status = Protos.TaskStatus.newBuilder()
-                .setTaskId(task.getTaskId())
-                .setState(Protos.TaskState.TASK_RUNNING).build();
-
-        driver.sendStatusUpdate(status);
-        try {
-            Request request = ByteStringUtils.fromByteString(task.getData());
-
-            LOGGER.info("Running task " + task.getTaskId().getValue());
-
-            Result result = findHighestSequence(request);
-
+    @Override
+    public Result process(Request request) throws InterruptedException {
+        return findHighestSequence(request);
+    }
 
-            status = Protos.TaskStatus.newBuilder()
-                    .setTaskId(task.getTaskId())
-                    .setData(ByteStringUtils.toByteString(result))
-                    .setState(Protos.TaskState.TASK_FINISHED).build();
-        } catch (Exception e) {
-            status = Protos.TaskStatus.newBuilder()
-                    .setTaskId(task.getTaskId())
-                    .setMessage(e.getMessage() + "\n" + getStringFromException(e))
-                    .setState(Protos.TaskState.TASK_FAILED).build();
+    private Result findHighestSequence(Request request) throws InterruptedException {
+        byte[] digits = request.isReference()
+                ? InputStore.read(request.getInputId(), request.getOffset(), request.getLength())
+                : request.getDigitSequence();
+        int numberOfDigits = request.getNumberOfDigits();
+        // Chunks overlap by exactly (numberOfDigits - 1) digits, so the last window of the chunk has to be scanned too
+        int maxInitialIndex = digits.length - numberOfDigits + 1;
+        int threads = maxInitialIndex < PARALLEL_THRESHOLD ? 1 : parallelism;
+        int blockSize = WINDOWS_PER_BLOCK * threads;
+        int[] floor = request.getFloor();
+        int k = request.getTopResults();
+        int[] best = new int[0];
+        //The exponents of the last of the best windows, once there are k of them
+        int[] lastExponents = null;
+        boolean skipped = false;
+        int blocksToCheck = 0;
+        int checkGap = 1;
+        // Scan in blocks, so that a kill request doesn't have to wait for the whole chunk
+        for (int from = 0; from < maxInitialIndex; from += blockSize) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            int to = (int) Math.min((long) from + blockSize, maxInitialIndex);
+            if ((floor != null || lastExponents != null) && blocksToCheck-- == 0) {
+                if (cannotWin(digits, from, to, numberOfDigits, floor, lastExponents)) {
+                    skipped = true;
+                    blocksToCheck = 0;
+                    checkGap = 1;
+                    continue;
+                }
+                blocksToCheck = checkGap;
+                checkGap *= 2;
+            }
+            FrameworkMetrics.get().windowsScanned(to - from);
+            int[] blockBest = ParallelWindowScan.findBestWindows(digits, from, to, numberOfDigits, k, threads);
+            int[] merged = WindowProductKernel.merge(digits, numberOfDigits, best, blockBest, k);
+            if (merged.length == k && (best.length < k || merged[k - 1] != best[k - 1])) {
+                lastExponents = DigitProducts.exponents(digits, merged[k - 1], numberOfDigits);
+            }
+            best = merged;
         }
+        if (skipped && floor != null) {
+            // Windows under the floor may have been skipped, so those that were found don't rank the chunk
+            best = aboveFloor(digits, numberOfDigits, best, floor);
+        }
+        if (best.length == 0) {
+            // The chunk is shorter than a window, or none of it matters
+            return none();
+        }
+        Result result = WindowProductKernel.toResult(digits, best[0], numberOfDigits);
+        if (k > 1) {
+            List<Result> runnersUp = new ArrayList<>(best.length - 1);
+            for (int i = 1; i < best.length; i++) {
+                runnersUp.add(WindowProductKernel.toResult(digits, best[i], numberOfDigits));
+            }
+            result.setRunnersUp(runnersUp);
+        }
+        return result;
+    }
 
-        driver.sendStatusUpdate(status);
-
+    /**
+     * The result of a chunk that holds no window that matters: a product of 0, without digits.
+     */
+    private static Result none() {
+        Result none = new Result();
+        none.setTotal(0);
+        return none;
     }
 
-    private String getStringFromException(Exception ex) {
-        StringWriter errors = new StringWriter();
-        ex.printStackTrace(new PrintWriter(errors));
-        return errors.toString();
+    /**
+     * @return the windows, best first, that reach the floor
+     */
+    private static int[] aboveFloor(byte[] digits, int numberOfDigits, int[] best, int[] floor) {
+        int kept = 0;
+        while (kept < best.length &&
+                DigitProducts.compare(DigitProducts.exponents(digits, best[kept], numberOfDigits), floor) >= 0) {
+            kept++;
+        }
+        return kept == best.length ? best : Arrays.copyOf(best, kept);
     }
 
-    private Result findHighestSequence(Request request) {
-        int maxInitialIndex = request.getDigitSequence().length - request.getNumberOfDigits();
-        Optional<Result> result = IntStream.range(0, maxInitialIndex)
-                .mapToObj(i -> Arrays.copyOfRange(request.getDigitSequence(), i, i + request.getNumberOfDigits()))
-                .map(x -> Arrays.stream(x).collect(Result::new, Result::addDigit, Result::combine))
-                .sorted(Comparator.comparing(Result::getTotal).reversed())
-                .findFirst();
-        return result.orElse(new Result());
+    /**
+     * @return true if no window starting in [from, to) can beat the last of the best windows so far, which comes
+     * earlier and so wins a tie, or reach the floor
+     */
+    private static boolean cannotWin(byte[] digits, int from, int to, int numberOfDigits, int[] floor,
+                                     int[] lastExponents) {
+        int[] counts = new int[10];
+        DigitProducts.count(digits, from, to + numberOfDigits - 1, counts);
+        int[] bound = DigitProducts.upperBound(counts, numberOfDigits);
+        return floor != null && DigitProducts.compare(bound, floor) < 0 ||
+                lastExponents != null && DigitProducts.compare(bound, lastExponents) <= 0;
     }
 
 
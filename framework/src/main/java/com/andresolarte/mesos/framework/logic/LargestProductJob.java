@@ -0,0 +1,136 @@
+package com.andresolarte.mesos.framework.logic;
+
+import com.andresolarte.mesos.framework.dto.Request;
+import com.andresolarte.mesos.framework.dto.RequestBatch;
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.input.DigitInput;
+import com.andresolarte.mesos.framework.job.Combiner;
+import com.andresolarte.mesos.framework.job.JobCoordinator;
+import com.andresolarte.mesos.framework.job.JobDefinition;
+import com.andresolarte.mesos.framework.job.Splitter;
+import com.andresolarte.mesos.framework.job.WorkerKernel;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The largest product of adjacent digits (Project Euler #8) as a job: the input is cut in overlapping chunks by
+ * {@link LargestProductCoordinator}, every chunk is scanned by a {@link LargestProductFinder}, and the best result
+ * wins, the earliest one on ties. When the job keeps its best {@code k} windows, the chunks answer with theirs, and
+ * a batch of chunks answers with all of them, best first.
+ */
+public class LargestProductJob implements JobDefinition<Request, Result> {
+    public static final String NAME = "largest-product";
+
+    private static final Combiner<Result> BEST_RESULT = LargestProductJob::combine;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Splitter<Request> createSplitter(DigitInput input, String sharedInputId) {
+        return createCoordinator(input, sharedInputId);
+    }
+
+    /**
+     * The coordinator keeps the best {@code coordinator.topResults} windows, and can journal them.
+     */
+    @Override
+    public JobCoordinator<Request, Result> createCoordinator(DigitInput input, String sharedInputId) {
+        return setUp(new LargestProductCoordinator(), input, sharedInputId);
+    }
+
+    /**
+     * Takes the {@code window}, {@code topResults} and {@code journal} parameters. Submitted jobs are only
+     * journaled when they name their own journal.
+     */
+    @Override
+    public JobCoordinator<Request, Result> createCoordinator(DigitInput input, String sharedInputId,
+                                                             Properties parameters) {
+        LargestProductCoordinator coordinator = new LargestProductCoordinator(
+                Integer.parseInt(parameters.getProperty("window",
+                        Integer.toString(LargestProductCoordinator.DEFAULT_WINDOW))),
+                Integer.parseInt(parameters.getProperty("topResults", "1")),
+                new TaskPlanner(), parameters.getProperty("journal"));
+        return setUp(coordinator, input, sharedInputId);
+    }
+
+    private static LargestProductCoordinator setUp(LargestProductCoordinator coordinator, DigitInput input,
+                                                   String sharedInputId) {
+        if (input == null) {
+            coordinator.setupTasks();
+        } else {
+            coordinator.setupTasks(input, sharedInputId);
+        }
+        return coordinator;
+    }
+
+    @Override
+    public WorkerKernel<Request, Result> createKernel(int parallelism) {
+        return new LargestProductFinder(parallelism);
+    }
+
+    /**
+     * Keeps the best of two results, or merges their windows if they are {@link Result#isTopResults() top results}.
+     * The windows of each chunk were already cut to the number asked for, but not those of a batch: which of them
+     * matter is only known once they are ranked with the results of the other tasks.
+     *
+     * @param left  the result of the earlier chunks, which wins ties
+     * @param right the result of the chunks right after them
+     */
+    static Result combine(Result left, Result right) {
+        if (!left.isTopResults() && !right.isTopResults()) {
+            return right.compareProduct(left) > 0 ? right : left;
+        }
+        List<Result> earlier = windowsWithDigits(left);
+        List<Result> later = windowsWithDigits(right);
+        // A result without digits only says that none of its chunks matter
+        if (later.isEmpty()) {
+            return left;
+        }
+        if (earlier.isEmpty()) {
+            return right;
+        }
+        List<Result> merged = new ArrayList<>(earlier.size() + later.size());
+        int i = 0;
+        int j = 0;
+        while (i < earlier.size() || j < later.size()) {
+            if (j == later.size() || i < earlier.size() && later.get(j).compareProduct(earlier.get(i)) <= 0) {
+                merged.add(earlier.get(i++));
+            } else {
+                merged.add(later.get(j++));
+            }
+        }
+        return Result.ofWindows(merged);
+    }
+
+    private static List<Result> windowsWithDigits(Result result) {
+        return result.getDigitSequence() == null ? Collections.<Result>emptyList() : result.getWindows();
+    }
+
+    @Override
+    public Combiner<Result> getCombiner() {
+        return BEST_RESULT;
+    }
+
+    /**
+     * Batches go out as a {@link RequestBatch}, which has a compact wire format.
+     */
+    @Override
+    public Serializable toPayload(List<Request> units) {
+        return units.size() == 1 ? units.get(0) : new RequestBatch(units);
+    }
+
+    @Override
+    public List<Request> fromPayload(Object payload) {
+        if (payload instanceof RequestBatch) {
+            return ((RequestBatch) payload).getRequests();
+        }
+        return Collections.singletonList((Request) payload);
+    }
+}
@@ -0,0 +1,103 @@
+package com.andresolarte.mesos.framework.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join version of {@link WindowProductKernel#findBestWindow(byte[], int, int, int)} for large chunks.
+ * The window starts are split into sub-ranges that share the digit array, so each sub-range reads up to
+ * (window - 1) digits past its end, the same overlap the chunks have. Each sub-range is scanned sequentially,
+ * and the local winners are reduced pairwise, keeping the lowest start index on ties. The best {@code k} windows
+ * are found the same way, with one piece per thread whose lists are merged in input order.
+ */
+public class ParallelWindowScan extends RecursiveTask<Integer> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] digits;
+    private final int from;
+    private final int to;
+    private final int window;
+    private final int leafSize;
+
+    private ParallelWindowScan(byte[] digits, int from, int to, int window, int leafSize) {
+        this.digits = digits;
+        this.from = from;
+        this.to = to;
+        this.window = window;
+        this.leafSize = leafSize;
+    }
+
+    /**
+     * Scans the windows starting in [from, to) with up to {@code parallelism} threads.
+     *
+     * @return the start index of the best window, or -1 if the range holds no window
+     */
+    public static int findBestWindow(byte[] digits, int from, int to, int window, int parallelism) {
+        int windows = to - from;
+        if (parallelism <= 1 || windows <= 1) {
+            return WindowProductKernel.findBestWindow(digits, from, to, window);
+        }
+        int leafSize = (windows + parallelism - 1) / parallelism;
+        return PoolHolder.POOL.invoke(new ParallelWindowScan(digits, from, to, window, leafSize));
+    }
+
+    /**
+     * Finds the best {@code k} windows starting in [from, to) with up to {@code parallelism} threads, see
+     * {@link WindowProductKernel#findBestWindows(byte[], int, int, int, int)}.
+     */
+    public static int[] findBestWindows(byte[] digits, int from, int to, int window, int k, int parallelism) {
+        if (k == 1) {
+            int best = findBestWindow(digits, from, to, window, parallelism);
+            return best < 0 ? new int[0] : new int[]{best};
+        }
+        int windows = to - from;
+        if (parallelism <= 1 || windows <= 1) {
+            return WindowProductKernel.findBestWindows(digits, from, to, window, k);
+        }
+        int pieceSize = (windows + parallelism - 1) / parallelism;
+        List<ForkJoinTask<int[]>> pieces = new ArrayList<>(parallelism);
+        for (int start = from; start < to; start += pieceSize) {
+            int pieceFrom = start;
+            int pieceTo = Math.min(to, start + pieceSize);
+            pieces.add(PoolHolder.POOL.submit(
+                    () -> WindowProductKernel.findBestWindows(digits, pieceFrom, pieceTo, window, k)));
+        }
+        int[] best = new int[0];
+        for (ForkJoinTask<int[]> piece : pieces) {
+            best = WindowProductKernel.merge(digits, window, best, piece.join(), k);
+        }
+        return best;
+    }
+
+    @Override
+    protected Integer compute() {
+        if (to - from <= leafSize) {
+            return WindowProductKernel.findBestWindow(digits, from, to, window);
+        }
+        int middle = from + (to - from) / 2;
+        ParallelWindowScan left = new ParallelWindowScan(digits, from, middle, window, leafSize);
+        ParallelWindowScan right = new ParallelWindowScan(digits, middle, to, window, leafSize);
+        left.fork();
+        int rightBest = right.compute();
+        int leftBest = left.join();
+        if (leftBest < 0) {
+            return rightBest;
+        }
+        if (rightBest < 0) {
+            return leftBest;
+        }
+        return WindowProductKernel.compare(digits, rightBest, leftBest, window) > 0 ? rightBest : leftBest;
+    }
+
+    /**
+     * One pool per Executor process, shared by all tasks. Each task splits its range into at most as many pieces
+     * as it has CPUs, so it never keeps more than that many pool threads busy.
+     */
+    private static class PoolHolder {
+        private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,224 @@
+package com.andresolarte.mesos.framework.logic;
+
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.util.ByteStringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Results of chunks seen before, keyed by the job, the window and a SHA-256 hash of the digits of the chunk, so a
+ * job over the same input as an earlier one resolves its chunks without running them.
+ * <p>
+ * The cache holds up to {@code cache.maxEntries} results (default 65536), evicting the least recently used. It lives
+ * in a file: every result stored is appended to it as a record with its own CRC, and loading replays the file,
+ * dropping a torn or damaged tail. Hits only move the entry in memory; the file is rewritten with just the live
+ * entries, least recently used first, once it holds twice as many records as the cache, and when the cache is closed
+ * after hits, which happens at the latest when the JVM exits. Writes are not forced to disk; losing the last ones only
+ * costs running those chunks again, and losing the order of the hits only makes eviction less accurate.
+ * <p>
+ * All the coordinators of a Scheduler share the cache of a file, see {@link #open(String)}. Safe to use from any
+ * thread.
+ */
+public class ResultCache {
+    private final static Logger LOGGER = Logger.getLogger(ResultCache.class.getName());
+    private static final int MAX_ENTRIES = Integer.getInteger("cache.maxEntries", 65536);
+    private static final Map<String, ResultCache> CACHES = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (ResultCache cache : CACHES.values()) {
+                cache.close();
+            }
+        }, "result-cache-close"));
+    }
+
+    private final Path path;
+    private final int maxEntries;
+    private final Map<String, byte[]> entries;
+    private DataOutputStream out;
+    private int records = 0;
+    //Whether the entries were used in another order than the file has them
+    private boolean reordered = false;
+    private final CRC32 crc = new CRC32();
+
+    private ResultCache(Path path, int maxEntries) {
+        this.path = path;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > ResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param path the cache file, or null for no cache
+     * @return the cache kept in the file, loaded the first time it is asked for, or null
+     */
+    public static ResultCache open(String path) {
+        if (path == null) {
+            return null;
+        }
+        return CACHES.computeIfAbsent(Paths.get(path).toAbsolutePath().toString(), file -> {
+            ResultCache cache = new ResultCache(Paths.get(file), MAX_ENTRIES);
+            cache.load();
+            return cache;
+        });
+    }
+
+    /**
+     * The key of the result of a chunk.
+     */
+    public static String key(String jobName, int window, byte[] digits) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(digits);
+            return jobName + ':' + window + ':' + Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @return the cached result, or null
+     */
+    public synchronized Result get(String key) {
+        byte[] result = entries.get(key);
+        if (result == null) {
+            return null;
+        }
+        reordered = true;
+        return ByteStringUtils.fromBytes(result);
+    }
+
+    public synchronized void put(String key, Result result) {
+        byte[] bytes = ByteStringUtils.toBytes(result);
+        entries.put(key, bytes);
+        write(key, bytes);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Saves the order the entries were last used in, if hits changed it, and closes the file. The cache stays
+     * usable, in memory only.
+     */
+    public synchronized void close() {
+        if (reordered && out != null) {
+            compact();
+        }
+        closeFile();
+    }
+
+    private void load() {
+        if (Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                while (true) {
+                    String key = in.readUTF();
+                    byte[] result = new byte[in.readInt()];
+                    in.readFully(result);
+                    if (in.readInt() != checksum(key, result)) {
+                        LOGGER.warning("Dropping the damaged end of the result cache " + path);
+                        break;
+                    }
+                    entries.put(key, result);
+                    records++;
+                }
+            } catch (EOFException e) {
+                // A record torn by a crash, or simply the end of the file
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Unable to read all of the result cache " + path, e);
+            }
+            LOGGER.info("Loaded " + entries.size() + " results from the cache " + path);
+        }
+        compact();
+    }
+
+    private void write(String key, byte[] result) {
+        if (records >= 2 * maxEntries) {
+            compact();
+        }
+        if (out == null) {
+            return;
+        }
+        try {
+            writeRecord(out, key, result);
+            out.flush();
+            records++;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write to the result cache " + path + ", keeping it in memory only", e);
+            closeFile();
+        }
+    }
+
+    /**
+     * Rewrites the file with the live entries, least recently used first, and appends to it from there on.
+     */
+    private void compact() {
+        closeFile();
+        Path compacted = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream rewrite = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(compacted)))) {
+                for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                    writeRecord(rewrite, entry.getKey(), entry.getValue());
+                }
+            }
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            records = entries.size();
+            reordered = false;
+            out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(path, StandardOpenOption.APPEND)));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write the result cache " + path + ", keeping it in memory only", e);
+        }
+    }
+
+    private void writeRecord(DataOutputStream stream, String key, byte[] result) throws IOException {
+        stream.writeUTF(key);
+        stream.writeInt(result.length);
+        stream.write(result);
+        stream.writeInt(checksum(key, result));
+    }
+
+    private int checksum(String key, byte[] result) {
+        crc.reset();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        crc.update(result);
+        return (int) crc.getValue();
+    }
+
+    private void closeFile() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to close the result cache " + path, e);
+        }
+        out = null;
+    }
+}
@@ -0,0 +1,438 @@
+package com.andresolarte.mesos.framework.logic;
+
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.input.DigitInput;
+import com.andresolarte.mesos.framework.util.ByteStringUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the task results taken in by the coordinator, so that a restarted Scheduler only has to run
+ * the tasks that are still missing.
+ * <p>
+ * The file starts with a header holding the {@link TaskPlan} and a hash of the whole input; a journal is only
+ * reused for the same input and window. Every result is then appended as a record with its own CRC, so a record
+ * torn by a crash is detected and dropped, along with anything after it. Writes are forced to disk in batches of
+ * {@code journal.syncEvery} records or every {@code journal.syncMillis}, whichever comes first: a crash loses at most
+ * the last batch, which is simply computed again.
+ * <p>
+ * Every {@code journal.snapshotEvery} records, the results journaled so far are written compactly to a snapshot
+ * file next to the journal (the best windows, by task, and the finished tasks as ranges), and the journal starts
+ * over. The journal keeps its own {@link ResultReducer} of the records it wrote for that, so a snapshot holds exactly
+ * what it replaces. Loading reads the snapshot, then the journal.
+ * <p>
+ * The writes, syncs and snapshots run in order on a background thread, so the Scheduler callbacks that take in the
+ * results never wait for the disk. A write that fails is reported by the next call.
+ */
+public class ResultJournal implements AutoCloseable {
+    private static final int MAGIC = 0x4C504A31;
+    private static final int HEADER_SIZE = 4 + 8 + 4 + 4 + 4 + 8;
+    //Record types
+    private static final byte RECORD_RESULT = 1;
+    private static final byte RECORD_FINISHED = 2;
+    private static final int RECORD_OVERHEAD = 1 + 4 + 4 + 4;
+    //Digits hashed at a time for the fingerprint
+    private static final int FINGERPRINT_CHUNK = 1 << 20;
+
+    private static final int SYNC_EVERY = Integer.getInteger("journal.syncEvery", 64);
+    private static final long SYNC_NANOS = Long.getLong("journal.syncMillis", 1000) * 1000000L;
+    private static final int SNAPSHOT_EVERY = Integer.getInteger("journal.snapshotEvery", 4096);
+
+    private final Path path;
+    private final TaskPlan plan;
+    private final long fingerprint;
+    private final FileChannel channel;
+    private ByteBuffer record = ByteBuffer.allocate(256);
+    private final CRC32 crc = new CRC32();
+    //The records written, for the snapshots
+    private final ResultReducer written;
+    //Only touched by the writer thread
+    private int unsynced = 0;
+    private long lastSync = System.nanoTime();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile IOException failure;
+    private int sinceSnapshot = 0;
+
+    private ResultJournal(Path path, TaskPlan plan, long fingerprint, int topResults, FileChannel channel) {
+        this.path = path;
+        this.plan = plan;
+        this.fingerprint = fingerprint;
+        this.channel = channel;
+        this.written = new ResultReducer(plan.getTaskCount(), topResults);
+    }
+
+    /**
+     * Starts a new journal for the plan, replacing whatever was at the path.
+     *
+     * @param topResults the number of best windows the snapshots keep
+     */
+    public static ResultJournal create(Path path, TaskPlan plan, long fingerprint, int topResults)
+            throws IOException {
+        Files.deleteIfExists(snapshotPath(path));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        writeHeader(channel, plan, fingerprint);
+        channel.force(true);
+        return new ResultJournal(path, plan, fingerprint, topResults, channel);
+    }
+
+    /**
+     * Reopens an existing journal to append to it, after a torn last record, if any, is cut off.
+     *
+     * @param topResults the number of best windows the snapshots keep
+     */
+    public static ResultJournal append(Path path, TaskPlan plan, long fingerprint, int topResults)
+            throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        long end = scan(channel, null);
+        channel.truncate(end);
+        channel.position(end);
+        ResultJournal journal = new ResultJournal(path, plan, fingerprint, topResults, channel);
+        replay(path, journal.written);
+        return journal;
+    }
+
+    /**
+     * @return the plan the journal at the path was written for, or null if there's no usable journal there for this
+     * input and window
+     */
+    public static TaskPlan readPlan(Path path, long inputLength, int window, long fingerprint) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readHeader(channel, inputLength, window, fingerprint);
+        }
+    }
+
+    /**
+     * Feeds the snapshot and the journal at the path into the reducer.
+     *
+     * @return the number of records read
+     */
+    public static int replay(Path path, ResultReducer reducer) throws IOException {
+        int[] records = new int[1];
+        Path snapshot = snapshotPath(path);
+        if (Files.exists(snapshot)) {
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                scan(channel, (type, first, count, result) -> {
+                    records[0]++;
+                    replay(reducer, type, first, count, result);
+                });
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            scan(channel, (type, first, count, result) -> {
+                records[0]++;
+                replay(reducer, type, first, count, result);
+            });
+        }
+        return records[0];
+    }
+
+    private static void replay(ResultReducer reducer, byte type, int first, int count, Result result) {
+        if (type == RECORD_RESULT) {
+            reducer.ingest(first, count, result);
+        } else {
+            reducer.markFinished(first, count);
+        }
+    }
+
+    /**
+     * Identity of an input: its length and a CRC of all of its digits, so that a journal is never resumed for an
+     * input that was edited anywhere. Reads the whole input once.
+     */
+    public static long fingerprint(DigitInput input) {
+        CRC32 crc = new CRC32();
+        long length = input.length();
+        for (long offset = 0; offset < length; offset += FINGERPRINT_CHUNK) {
+            crc.update(input.read(offset, (int) Math.min(FINGERPRINT_CHUNK, length - offset)));
+        }
+        return (length << 32) ^ crc.getValue();
+    }
+
+    /**
+     * Queues the result of the tasks [first, first + count) to be appended. The batch is forced to disk when it is
+     * due.
+     *
+     * @throws IOException if an earlier write failed
+     */
+    public synchronized void append(int first, int count, Result result) throws IOException {
+        checkFailure();
+        byte[] payload = ByteStringUtils.toByteString(result).toByteArray();
+        sinceSnapshot++;
+        submit(() -> {
+            writeRecord(channel, RECORD_RESULT, first, count, payload);
+            written.ingest(first, count, result);
+            unsynced++;
+            if (unsynced >= SYNC_EVERY || System.nanoTime() - lastSync >= SYNC_NANOS) {
+                force();
+            }
+        });
+    }
+
+    /**
+     * @return true once enough records were appended since the last snapshot
+     */
+    public synchronized boolean isSnapshotDue() {
+        return sinceSnapshot >= SNAPSHOT_EVERY;
+    }
+
+    /**
+     * Queues writing the results journaled so far to the snapshot file, and emptying the journal.
+     * If this is interrupted by a crash, loading finds the records in both files, and the reducer drops the
+     * duplicates.
+     *
+     * @throws IOException if an earlier write failed
+     */
+    public synchronized void snapshot() throws IOException {
+        checkFailure();
+        sinceSnapshot = 0;
+        submit(this::writeSnapshot);
+    }
+
+    private void writeSnapshot() throws IOException {
+        ResultReducer reducer = written;
+        Path snapshot = snapshotPath(path);
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out, plan, fingerprint);
+            // Best results first, so they aren't dropped as duplicates of the finished ranges. The windows kept from a
+            // task are always its best ones, so they go back in a single result, in the same ranks
+            Map<Integer, List<Result>> windows = new LinkedHashMap<>();
+            for (ResultReducer.RankedResult ranked : reducer.getTopRanked()) {
+                windows.computeIfAbsent(ranked.getTask(), task -> new ArrayList<>()).add(ranked.getResult());
+            }
+            for (Map.Entry<Integer, List<Result>> task : windows.entrySet()) {
+                List<Result> kept = task.getValue();
+                Result result = kept.size() == 1 ? kept.get(0) : Result.ofWindows(kept);
+                writeRecord(out, RECORD_RESULT, task.getKey(), 1, ByteStringUtils.toByteString(result).toByteArray());
+            }
+            int taskCount = plan.getTaskCount();
+            int first = 0;
+            while (first < taskCount) {
+                while (first < taskCount && !reducer.isFinished(first)) {
+                    first++;
+                }
+                int end = first;
+                while (end < taskCount && reducer.isFinished(end)) {
+                    end++;
+                }
+                if (end > first) {
+                    writeRecord(out, RECORD_FINISHED, first, end - first, null);
+                }
+                first = end;
+            }
+            out.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.truncate(HEADER_SIZE);
+        channel.position(HEADER_SIZE);
+        channel.force(true);
+        unsynced = 0;
+        lastSync = System.nanoTime();
+    }
+
+    /**
+     * Queues forcing the records written so far to disk.
+     *
+     * @throws IOException if an earlier write failed
+     */
+    public synchronized void sync() throws IOException {
+        checkFailure();
+        submit(this::force);
+    }
+
+    /**
+     * Writes and syncs whatever is still queued, then closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer.isShutdown()) {
+            return;
+        }
+        submit(this::force);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        checkFailure();
+    }
+
+    private void force() throws IOException {
+        channel.force(false);
+        unsynced = 0;
+        lastSync = System.nanoTime();
+    }
+
+    private void submit(DiskWork work) {
+        writer.execute(() -> {
+            if (failure != null) {
+                return;
+            }
+            try {
+                work.run();
+            } catch (IOException e) {
+                failure = e;
+            }
+        });
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("Writing to the journal " + path + " failed", e);
+        }
+    }
+
+    private static Path snapshotPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".snapshot");
+    }
+
+    private static void writeHeader(FileChannel channel, TaskPlan plan, long fingerprint) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putLong(plan.getInputLength())
+                .putInt(plan.getWindow())
+                .putInt(plan.getChunkSize())
+                .putInt(plan.getTaskCount())
+                .putLong(fingerprint);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    private static TaskPlan readHeader(FileChannel channel, long inputLength, int window, long fingerprint)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (!readFully(channel, header) || header.getInt() != MAGIC) {
+            return null;
+        }
+        long journalLength = header.getLong();
+        int journalWindow = header.getInt();
+        int chunkSize = header.getInt();
+        int taskCount = header.getInt();
+        if (journalLength != inputLength || journalWindow != window || header.getLong() != fingerprint) {
+            return null;
+        }
+        return new TaskPlan(journalLength, journalWindow, chunkSize, taskCount);
+    }
+
+    private void writeRecord(FileChannel out, byte type, int first, int count, byte[] payload) throws IOException {
+        int size = RECORD_OVERHEAD + (payload == null ? 0 : 4 + payload.length);
+        if (record.capacity() < size) {
+            record = ByteBuffer.allocate(Math.max(size, record.capacity() * 2));
+        }
+        record.clear();
+        record.put(type).putInt(first).putInt(count);
+        if (payload != null) {
+            record.putInt(payload.length).put(payload);
+        }
+        crc.reset();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            out.write(record);
+        }
+    }
+
+    /**
+     * Reads the records after the header, up to the end of the file or the first damaged record.
+     *
+     * @return the position right after the last good record
+     */
+    private static long scan(FileChannel channel, RecordHandler handler) throws IOException {
+        long position = HEADER_SIZE;
+        long size = channel.size();
+        // Type, first and count, then either the payload length or, for a record without payload, the CRC
+        ByteBuffer fixed = ByteBuffer.allocate(RECORD_OVERHEAD);
+        CRC32 crc = new CRC32();
+        while (position < size) {
+            fixed.clear();
+            channel.position(position);
+            if (!readFully(channel, fixed)) {
+                break;
+            }
+            byte type = fixed.get();
+            int first = fixed.getInt();
+            int count = fixed.getInt();
+            if (type != RECORD_RESULT && type != RECORD_FINISHED) {
+                break;
+            }
+            crc.reset();
+            crc.update(fixed.array(), 0, 9);
+            byte[] payload = null;
+            if (type == RECORD_RESULT) {
+                int length = fixed.getInt();
+                if (length < 0 || position + RECORD_OVERHEAD + 4 + length > size) {
+                    break;
+                }
+                ByteBuffer rest = ByteBuffer.allocate(length + 4);
+                if (!readFully(channel, rest)) {
+                    break;
+                }
+                crc.update(fixed.array(), 9, 4);
+                payload = new byte[length];
+                rest.get(payload);
+                crc.update(payload);
+                if (rest.getInt() != (int) crc.getValue()) {
+                    break;
+                }
+                position += RECORD_OVERHEAD + 4 + length;
+            } else {
+                // No payload: the last four bytes read are the CRC
+                if (fixed.getInt() != (int) crc.getValue()) {
+                    break;
+                }
+                position += RECORD_OVERHEAD;
+            }
+            if (handler != null) {
+                Result result = payload == null ? null : ByteStringUtils.fromBytes(payload);
+                handler.record(type, first, count, result);
+            }
+        }
+        return Math.max(HEADER_SIZE, Math.min(position, size));
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    private interface DiskWork {
+        void run() throws IOException;
+    }
+
+    private interface RecordHandler {
+        void record(byte type, int first, int count, Result result);
+    }
+}
@@ -0,0 +1,188 @@
+package com.andresolarte.mesos.framework.logic;
+
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.util.ConcurrentBitSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Folds task results into the best {@code k} results seen so far, without locking.
+ * <p>
+ * Every task index is recorded in a bit set the first time one of its results arrives, so duplicated status
+ * updates are dropped and the finished count can't overshoot. The best results live in a small immutable array
+ * that is replaced with a compare-and-set; results that don't make it into a full array are rejected without
+ * allocating anything.
+ * <p>
+ * A result may hold several windows, the best ones of its task (see {@link Result#getWindows()}); each of them is
+ * ranked on its own, so the best {@code k} windows come out whichever tasks they were found by.
+ */
+public class ResultReducer {
+
+    private final int k;
+    private final ConcurrentBitSet finished;
+    private final AtomicInteger finishedCount = new AtomicInteger();
+    private final AtomicReference<RankedResult[]> top = new AtomicReference<>(new RankedResult[0]);
+
+    public ResultReducer(int taskCount, int k) {
+        this.k = Math.max(1, k);
+        this.finished = new ConcurrentBitSet(taskCount);
+    }
+
+    /**
+     * Records the result of the tasks [firstTask, firstTask + count), and each of its windows.
+     *
+     * @return false if all of those tasks already had a result, in which case the result is ignored
+     */
+    public boolean ingest(int firstTask, int count, Result result) {
+        if (!markFinished(firstTask, count)) {
+            return false;
+        }
+        List<Result> windows = result.getWindows();
+        for (int rank = 0; rank < windows.size() && rank < k; rank++) {
+            offer(new RankedResult(windows.get(rank), firstTask, rank));
+        }
+        return true;
+    }
+
+    /**
+     * Records the tasks [firstTask, firstTask + count) as finished without a result, e.g. when restoring a
+     * snapshot whose best results are already in.
+     *
+     * @return false if all of those tasks were already finished
+     */
+    public boolean markFinished(int firstTask, int count) {
+        int newlyFinished = 0;
+        for (int task = firstTask; task < firstTask + count; task++) {
+            if (finished.set(task)) {
+                newlyFinished++;
+            }
+        }
+        if (newlyFinished == 0) {
+            return false;
+        }
+        finishedCount.addAndGet(newlyFinished);
+        return true;
+    }
+
+    private void offer(RankedResult candidate) {
+        while (true) {
+            RankedResult[] current = top.get();
+            if (current.length == k && !candidate.isBetterThan(current[k - 1])) {
+                return;
+            }
+            int position = 0;
+            while (position < current.length && !candidate.isBetterThan(current[position])) {
+                position++;
+            }
+            RankedResult[] next = new RankedResult[Math.min(k, current.length + 1)];
+            System.arraycopy(current, 0, next, 0, position);
+            next[position] = candidate;
+            System.arraycopy(current, position, next, position + 1, next.length - position - 1);
+            if (top.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    public boolean isFinished(int task) {
+        return finished.get(task);
+    }
+
+    public int getFinishedCount() {
+        return finishedCount.get();
+    }
+
+    public boolean isComplete() {
+        return finishedCount.get() == finished.size();
+    }
+
+    /**
+     * @return the best result so far, or null if there's none yet
+     */
+    public Result getBest() {
+        RankedResult[] current = top.get();
+        return current.length == 0 ? null : current[0].result;
+    }
+
+    /**
+     * @return the worst of the results kept, which a new result has to beat to be kept too, or null while there's
+     * still room for any result
+     */
+    public Result getThreshold() {
+        RankedResult[] current = top.get();
+        return current.length < k ? null : current[k - 1].result;
+    }
+
+    /**
+     * @return the best results so far with the task each came from, best first
+     */
+    public List<RankedResult> getTopRanked() {
+        return Arrays.asList(top.get());
+    }
+
+    /**
+     * @return the best results so far, best first
+     */
+    public List<Result> getTop() {
+        RankedResult[] current = top.get();
+        List<Result> results = new ArrayList<>(current.length);
+        for (RankedResult ranked : current) {
+            results.add(ranked.result);
+        }
+        return results;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultReducer{finished=" + finishedCount.get() + "/" + finished.size() +
+                ", top=" + Arrays.toString(top.get()) + "}";
+    }
+
+    /**
+     * A window and the task it came from. Equal totals are ranked by task index, then by their rank within the
+     * task, which follows the input, so the outcome doesn't depend on the order in which results arrive.
+     */
+    public static class RankedResult {
+        private final Result result;
+        private final int task;
+        private final int rank;
+
+        RankedResult(Result result, int task, int rank) {
+            this.result = result;
+            this.task = task;
+            this.rank = rank;
+        }
+
+        public Result getResult() {
+            return result;
+        }
+
+        public int getTask() {
+            return task;
+        }
+
+        /**
+         * @return the position of the window among the windows of its task's result
+         */
+        public int getRank() {
+            return rank;
+        }
+
+        boolean isBetterThan(RankedResult other) {
+            int comparison = result.compareProduct(other.result);
+            if (comparison != 0) {
+                return comparison > 0;
+            }
+            return task != other.task ? task < other.task : rank < other.rank;
+        }
+
+        @Override
+        public String toString() {
+            return result.getProduct() + "@" + task;
+        }
+    }
+}
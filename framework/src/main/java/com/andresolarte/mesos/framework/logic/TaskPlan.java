@@ -0,0 +1,69 @@
+package com.andresolarte.mesos.framework.logic;
+
+/**
+ * Describes how the input is cut into tasks: every task gets a chunk of {@code chunkSize} digits, and consecutive
+ * chunks share {@code overlap} digits (window - 1) so that every window lies entirely inside at least one chunk.
+ * The last chunk is cut short at the end of the input.
+ */
+public class TaskPlan {
+    private final long inputLength;
+    private final int window;
+    private final int chunkSize;
+    private final int overlap;
+    private final int taskCount;
+
+    public TaskPlan(long inputLength, int window, int chunkSize, int taskCount) {
+        this.inputLength = inputLength;
+        this.window = window;
+        this.chunkSize = chunkSize;
+        this.overlap = Math.max(0, window - 1);
+        this.taskCount = taskCount;
+    }
+
+    public long getInputLength() {
+        return inputLength;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getOverlap() {
+        return overlap;
+    }
+
+    /**
+     * Distance between the start of two consecutive chunks, which is also the number of windows each full chunk scans.
+     */
+    public int getStride() {
+        return chunkSize - overlap;
+    }
+
+    public int getTaskCount() {
+        return taskCount;
+    }
+
+    public long getStartIndex(int taskIndex) {
+        return (long) taskIndex * getStride();
+    }
+
+    /**
+     * @return the end of the chunk, exclusive
+     */
+    public long getEndIndex(int taskIndex) {
+        return Math.min(getStartIndex(taskIndex) + chunkSize, inputLength);
+    }
+
+    @Override
+    public String toString() {
+        return "TaskPlan{inputLength=" + inputLength +
+                ", window=" + window +
+                ", chunkSize=" + chunkSize +
+                ", overlap=" + overlap +
+                ", taskCount=" + taskCount + "}";
+    }
+}
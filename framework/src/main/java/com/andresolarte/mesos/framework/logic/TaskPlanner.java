@@ -0,0 +1,58 @@
+package com.andresolarte.mesos.framework.logic;
+
+/**
+ * Sizes the chunks handed out to each task.
+ * <p>
+ * Launching a task is far more expensive than scanning a few windows, so chunks are made as large as possible:
+ * the input is spread over the available cores, but no task gets less than {@code minWindowsPerTask} windows, nor
+ * more work than fits in {@code targetTaskMillis} at the estimated scan rate (in which case the tasks run in waves).
+ * <p>
+ * The defaults can be tuned with the system properties {@code largestproduct.targetTaskMillis},
+ * {@code largestproduct.windowsPerMillisecond} and {@code largestproduct.minWindowsPerTask}.
+ */
+public class TaskPlanner {
+
+    private final long targetTaskMillis;
+    private final long windowsPerMillisecond;
+    private final long minWindowsPerTask;
+
+    public TaskPlanner() {
+        this(Long.getLong("largestproduct.targetTaskMillis", 1000),
+                Long.getLong("largestproduct.windowsPerMillisecond", 100000),
+                Long.getLong("largestproduct.minWindowsPerTask", 4096));
+    }
+
+    public TaskPlanner(long targetTaskMillis, long windowsPerMillisecond, long minWindowsPerTask) {
+        this.targetTaskMillis = targetTaskMillis;
+        this.windowsPerMillisecond = windowsPerMillisecond;
+        this.minWindowsPerTask = minWindowsPerTask;
+    }
+
+    /**
+     * @param inputLength number of digits in the input
+     * @param window      number of adjacent digits in each window
+     * @param cores       number of task slots available across the current offers
+     */
+    public TaskPlan plan(long inputLength, int window, int cores) {
+        long windows = Math.max(0, inputLength - window + 1);
+        if (windows == 0) {
+            // Nothing to scan, a single task keeps the job flow unchanged
+            return new TaskPlan(inputLength, window, (int) inputLength, 1);
+        }
+        long maxWindowsPerTask = Math.max(1, targetTaskMillis * windowsPerMillisecond);
+        long windowsPerTask = divideRoundingUp(windows, Math.max(1, cores));
+        windowsPerTask = Math.min(windowsPerTask, maxWindowsPerTask);
+        windowsPerTask = Math.max(windowsPerTask, minWindowsPerTask);
+        windowsPerTask = Math.min(windowsPerTask, windows);
+        // Keep the chunk addressable as an int array
+        windowsPerTask = Math.min(windowsPerTask, Integer.MAX_VALUE - window);
+
+        int taskCount = (int) divideRoundingUp(windows, windowsPerTask);
+        int chunkSize = (int) windowsPerTask + Math.max(0, window - 1);
+        return new TaskPlan(inputLength, window, chunkSize, taskCount);
+    }
+
+    private static long divideRoundingUp(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,308 @@
+package com.andresolarte.mesos.framework.logic;
+
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.util.DigitProducts;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming kernel that scans a digit sequence, one digit per byte, for the window with the largest product.
+ * A window holding a zero can't win unless they all do, so the scan looks for the zeros first, eight digits at a
+ * time, and only goes through the runs of digits between them that are at least a window long. Along a run it
+ * keeps a rolling product, so each step costs one division and one multiplication, and nothing is allocated per
+ * window. Only the winning window is turned into a {@link Result}.
+ * <p>
+ * Windows too wide for a long are scanned the same way on the prime exponents of the product instead, see
+ * {@link DigitProducts}, and compared by their logarithm. Their exact product is never worked out here.
+ * <p>
+ * A job that keeps more than the best window asks for the best {@code k} of each range instead, see
+ * {@link #findBestWindows(byte[], int, int, int, int)}. That scan rolls the prime exponents whatever the width, and
+ * keeps the best windows in a small array sorted by product, which a window only enters once it beats the last.
+ */
+public final class WindowProductKernel {
+
+    /**
+     * Largest window that can be multiplied out in a long without overflowing (9^19 &lt; 2^63).
+     */
+    static final int MAX_EXACT_WINDOW = 19;
+
+    private WindowProductKernel() {
+    }
+
+    /**
+     * Finds the window with the largest product among the windows starting in [from, to).
+     * Ties are resolved in favour of the lowest start index.
+     *
+     * @return the start index of the best window, or -1 if the range holds no window
+     */
+    public static int findBestWindow(byte[] digits, int from, int to, int window) {
+        if (to <= from) {
+            return -1;
+        }
+        ByteBuffer words = ByteBuffer.wrap(digits).order(ByteOrder.LITTLE_ENDIAN);
+        if (window > MAX_EXACT_WINDOW) {
+            return findBestWideWindow(digits, words, from, to, window);
+        }
+        // Every window holds a zero until proven otherwise, and the first one wins a tie
+        int best = from;
+        long bestTotal = 0;
+        int end = to + window - 1;
+        for (int runStart = from; runStart < to; ) {
+            int zero = nextZero(digits, words, runStart, end);
+            int last = Math.min(zero - window, to - 1);
+            if (last >= runStart) {
+                long product = 1;
+                for (int i = runStart; i < runStart + window; i++) {
+                    product *= digits[i];
+                }
+                if (product > bestTotal) {
+                    bestTotal = product;
+                    best = runStart;
+                }
+                for (int start = runStart + 1; start <= last; start++) {
+                    product = product / digits[start - 1] * digits[start + window - 1];
+                    if (product > bestTotal) {
+                        bestTotal = product;
+                        best = start;
+                    }
+                }
+            }
+            runStart = zero + 1;
+        }
+        return best;
+    }
+
+    /**
+     * Finds the {@code k} windows with the largest products among the windows starting in [from, to), best first.
+     * Windows with the same product are ranked by their start index, lowest first.
+     *
+     * @return the start indexes of the best windows, fewer than {@code k} only if the range holds fewer windows
+     */
+    public static int[] findBestWindows(byte[] digits, int from, int to, int window, int k) {
+        if (k == 1) {
+            int best = findBestWindow(digits, from, to, window);
+            return best < 0 ? new int[0] : new int[]{best};
+        }
+        int size = 0;
+        int[] starts = new int[Math.max(0, Math.min(k, to - from))];
+        if (starts.length == 0) {
+            return starts;
+        }
+        int[][] kept = new int[starts.length][4];
+        ByteBuffer words = ByteBuffer.wrap(digits).order(ByteOrder.LITTLE_ENDIAN);
+        int end = to + window - 1;
+        for (int runStart = from; runStart < to; ) {
+            int zero = nextZero(digits, words, runStart, end);
+            int last = Math.min(zero - window, to - 1);
+            int twos = 0;
+            int threes = 0;
+            int fives = 0;
+            int sevens = 0;
+            for (int i = runStart; i < runStart + window && last >= runStart; i++) {
+                int digit = digits[i];
+                twos += DigitProducts.TWOS[digit];
+                threes += DigitProducts.THREES[digit];
+                fives += DigitProducts.FIVES[digit];
+                sevens += DigitProducts.SEVENS[digit];
+            }
+            for (int start = runStart; start <= last; start++) {
+                if (start > runStart) {
+                    int out = digits[start - 1];
+                    int in = digits[start + window - 1];
+                    twos += DigitProducts.TWOS[in] - DigitProducts.TWOS[out];
+                    threes += DigitProducts.THREES[in] - DigitProducts.THREES[out];
+                    fives += DigitProducts.FIVES[in] - DigitProducts.FIVES[out];
+                    sevens += DigitProducts.SEVENS[in] - DigitProducts.SEVENS[out];
+                }
+                // Windows come in order, so one that only ties with a kept window goes after it
+                int position = size;
+                while (position > 0 && beats(twos, threes, fives, sevens, kept[position - 1])) {
+                    position--;
+                }
+                if (position == starts.length) {
+                    continue;
+                }
+                int moved = Math.min(size, starts.length - 1) - position;
+                System.arraycopy(starts, position, starts, position + 1, moved);
+                int[] reused = kept[position + moved];
+                System.arraycopy(kept, position, kept, position + 1, moved);
+                reused[0] = twos;
+                reused[1] = threes;
+                reused[2] = fives;
+                reused[3] = sevens;
+                kept[position] = reused;
+                starts[position] = start;
+                size = Math.min(size + 1, starts.length);
+            }
+            runStart = zero + 1;
+        }
+        // Too few windows without a zero: the first windows with one come next, all with a product of 0
+        for (int start = from; size < starts.length; start++) {
+            if (!contains(starts, size, start)) {
+                starts[size++] = start;
+            }
+        }
+        return starts;
+    }
+
+    private static boolean beats(int twos, int threes, int fives, int sevens, int[] other) {
+        return DigitProducts.compareExponents(twos - other[0], threes - other[1], fives - other[2],
+                sevens - other[3]) > 0;
+    }
+
+    private static boolean contains(int[] starts, int size, int start) {
+        for (int i = 0; i < size; i++) {
+            if (starts[i] == start) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merges the best windows of two ranges, each best first, into the best {@code k} of both.
+     *
+     * @param earlier the windows of the range that comes first in the input, which win ties
+     * @param later   the windows of the range after it
+     */
+    public static int[] merge(byte[] digits, int window, int[] earlier, int[] later, int k) {
+        int[] merged = new int[Math.min(k, earlier.length + later.length)];
+        int left = 0;
+        int right = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (right == later.length ||
+                    left < earlier.length && compare(digits, later[right], earlier[left], window) <= 0) {
+                merged[i] = earlier[left++];
+            } else {
+                merged[i] = later[right++];
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * The rolling product relies on exact division, which no longer holds once the product overflows. Wide
+     * windows roll the exponents of 2, 3, 5 and 7 in the product instead, and compare their logarithms. Only a
+     * window whose logarithm comes close to the best one is compared exactly.
+     */
+    private static int findBestWideWindow(byte[] digits, ByteBuffer words, int from, int to, int window) {
+        int best = from;
+        boolean bestZero = true;
+        int bestTwos = 0;
+        int bestThrees = 0;
+        int bestFives = 0;
+        int bestSevens = 0;
+        double bestLog = 0;
+        int end = to + window - 1;
+        for (int runStart = from; runStart < to; ) {
+            int zero = nextZero(digits, words, runStart, end);
+            int last = Math.min(zero - window, to - 1);
+            if (last >= runStart) {
+                int twos = 0;
+                int threes = 0;
+                int fives = 0;
+                int sevens = 0;
+                for (int i = runStart; i < runStart + window; i++) {
+                    int digit = digits[i];
+                    twos += DigitProducts.TWOS[digit];
+                    threes += DigitProducts.THREES[digit];
+                    fives += DigitProducts.FIVES[digit];
+                    sevens += DigitProducts.SEVENS[digit];
+                }
+                for (int start = runStart; start <= last; start++) {
+                    if (start > runStart) {
+                        int out = digits[start - 1];
+                        int in = digits[start + window - 1];
+                        twos += DigitProducts.TWOS[in] - DigitProducts.TWOS[out];
+                        threes += DigitProducts.THREES[in] - DigitProducts.THREES[out];
+                        fives += DigitProducts.FIVES[in] - DigitProducts.FIVES[out];
+                        sevens += DigitProducts.SEVENS[in] - DigitProducts.SEVENS[out];
+                    }
+                    double log = DigitProducts.log(twos, threes, fives, sevens);
+                    if (bestZero || log > bestLog + 1e-3 || log > bestLog - 1e-3 && DigitProducts.compareExponents(
+                            twos - bestTwos, threes - bestThrees, fives - bestFives, sevens - bestSevens) > 0) {
+                        best = start;
+                        bestZero = false;
+                        bestTwos = twos;
+                        bestThrees = threes;
+                        bestFives = fives;
+                        bestSevens = sevens;
+                        bestLog = log;
+                    }
+                }
+            }
+            runStart = zero + 1;
+        }
+        return best;
+    }
+
+    /**
+     * Finds the first zero digit in [from, to), eight digits at a time: a byte of a word is zero exactly where
+     * subtracting one from it borrows, so the lowest flagged byte of {@code (word - 0x01..01) & ~word & 0x80..80}
+     * is the first zero. Bytes above it may be flagged wrongly, which doesn't matter.
+     *
+     * @param words the digits, viewed as little endian words
+     * @return the index of the first zero, or {@code to} if there is none
+     */
+    static int nextZero(byte[] digits, ByteBuffer words, int from, int to) {
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long word = words.getLong(i);
+            long zeros = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+            if (zeros != 0) {
+                return i + (Long.numberOfTrailingZeros(zeros) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (digits[i] == 0) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * The product of the window, or {@link Result#OVERFLOW} if it doesn't fit in a long.
+     */
+    public static long product(byte[] digits, int start, int window) {
+        long total = 1;
+        for (int i = start; i < start + window; i++) {
+            int digit = digits[i];
+            if (digit == 0) {
+                return 0;
+            }
+            if (total > Long.MAX_VALUE / digit) {
+                total = Result.OVERFLOW;
+            } else if (total != Result.OVERFLOW) {
+                total *= digit;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Compares the products of two windows.
+     */
+    public static int compare(byte[] digits, int left, int right, int window) {
+        if (window <= MAX_EXACT_WINDOW) {
+            return Long.compare(product(digits, left, window), product(digits, right, window));
+        }
+        return DigitProducts.compare(DigitProducts.exponents(digits, left, window),
+                DigitProducts.exponents(digits, right, window));
+    }
+
+    /**
+     * Builds the result for a single window.
+     */
+    public static Result toResult(byte[] digits, int start, int window) {
+        StringBuilder sequence = new StringBuilder(window);
+        for (int i = start; i < start + window; i++) {
+            sequence.append((char) ('0' + digits[i]));
+        }
+        Result result = new Result();
+        result.setTotal(product(digits, start, window));
+        result.setDigitSequence(sequence.toString());
+        return result;
+    }
+}
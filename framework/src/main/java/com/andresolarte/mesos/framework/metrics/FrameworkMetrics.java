@@ -0,0 +1,256 @@
+package com.andresolarte.mesos.framework.metrics;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Counters and latency histograms for the Scheduler and the Executor, one set per JVM.
+ * <p>
+ * Recording never locks or allocates, so it is safe on the hot paths. {@link #publish()} registers the metrics over
+ * JMX as {@value #OBJECT_NAME}, and logs a one line summary every {@code metrics.dumpSeconds} seconds (default 30,
+ * 0 turns it off). Until then they are only recorded, since bringing up the MBean server is slow.
+ */
+public class FrameworkMetrics implements FrameworkMetricsMXBean {
+    private final static Logger LOGGER = Logger.getLogger(FrameworkMetrics.class.getName());
+    public static final String OBJECT_NAME = "com.andresolarte.mesos:type=FrameworkMetrics";
+    private static final long DUMP_SECONDS = Long.getLong("metrics.dumpSeconds", 30);
+
+    //Scheduler
+    private final LongAdder offersReceived = new LongAdder();
+    private final LongAdder offersDeclined = new LongAdder();
+    private final LongAdder tasksLaunched = new LongAdder();
+    private final LongAdder tasksFinished = new LongAdder();
+    private final LongAdder tasksFailed = new LongAdder();
+    private final AtomicLong tasksInFlight = new AtomicLong();
+    private final LongAdder taskPayloadBytes = new LongAdder();
+    private final LongAdder resultPayloadBytes = new LongAdder();
+    private final LatencyHistogram offerToLaunch = new LatencyHistogram();
+    private final LatencyHistogram launchToRunning = new LatencyHistogram();
+    private final LatencyHistogram runningToFinished = new LatencyHistogram();
+    //Executor
+    private final AtomicLong executorTasksRunning = new AtomicLong();
+    private final LongAdder executorTasksKilled = new LongAdder();
+    private final LongAdder windowsScanned = new LongAdder();
+    private final LatencyHistogram executorQueueTime = new LatencyHistogram();
+    private final LatencyHistogram executorRunTime = new LatencyHistogram();
+
+    private boolean published;
+    private ScheduledExecutorService dumpService;
+
+    private static class Holder {
+        private static final FrameworkMetrics INSTANCE = new FrameworkMetrics();
+    }
+
+    /**
+     * @return the metrics of this JVM
+     */
+    public static FrameworkMetrics get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server and starts logging the summary periodically, unless it
+     * is turned off. Does nothing if they are already published.
+     */
+    public synchronized void publish() {
+        if (published) {
+            return;
+        }
+        published = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not publish the metrics over JMX", e);
+        }
+        if (DUMP_SECONDS <= 0) {
+            return;
+        }
+        dumpService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpService.scheduleAtFixedRate(() -> LOGGER.info(getSummary()),
+                DUMP_SECONDS, DUMP_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void offersReceived(int count) {
+        offersReceived.add(count);
+    }
+
+    public void offerDeclined() {
+        offersDeclined.increment();
+    }
+
+    public void taskLaunched(long offerToLaunchNanos, int payloadBytes) {
+        tasksLaunched.increment();
+        taskPayloadBytes.add(payloadBytes);
+        offerToLaunch.record(offerToLaunchNanos);
+    }
+
+    /**
+     * A batch of work pushed to a streaming worker, which counts as a launched task.
+     */
+    public void batchSent(int payloadBytes) {
+        tasksLaunched.increment();
+        taskPayloadBytes.add(payloadBytes);
+    }
+
+    public void taskRunning(long launchToRunningNanos) {
+        launchToRunning.record(launchToRunningNanos);
+    }
+
+    public void taskFinished(long runningToFinishedNanos, int resultBytes) {
+        tasksFinished.increment();
+        resultPayloadBytes.add(resultBytes);
+        if (runningToFinishedNanos >= 0) {
+            runningToFinished.record(runningToFinishedNanos);
+        }
+    }
+
+    public void taskFailed() {
+        tasksFailed.increment();
+    }
+
+    public void setTasksInFlight(long count) {
+        tasksInFlight.set(count);
+    }
+
+    public void executorTaskStarted(long queueNanos) {
+        executorTasksRunning.incrementAndGet();
+        executorQueueTime.record(queueNanos);
+    }
+
+    public void executorTaskEnded() {
+        executorTasksRunning.decrementAndGet();
+    }
+
+    public void executorTaskKilled() {
+        executorTasksKilled.increment();
+    }
+
+    public void taskRan(long runNanos) {
+        executorRunTime.record(runNanos);
+    }
+
+    public void windowsScanned(long windows) {
+        windowsScanned.add(windows);
+    }
+
+    @Override
+    public long getOffersReceived() {
+        return offersReceived.sum();
+    }
+
+    @Override
+    public long getOffersDeclined() {
+        return offersDeclined.sum();
+    }
+
+    @Override
+    public long getTasksLaunched() {
+        return tasksLaunched.sum();
+    }
+
+    @Override
+    public long getTasksFinished() {
+        return tasksFinished.sum();
+    }
+
+    @Override
+    public long getTasksFailed() {
+        return tasksFailed.sum();
+    }
+
+    @Override
+    public long getTasksInFlight() {
+        return tasksInFlight.get();
+    }
+
+    @Override
+    public long getTaskPayloadBytes() {
+        return taskPayloadBytes.sum();
+    }
+
+    @Override
+    public long getResultPayloadBytes() {
+        return resultPayloadBytes.sum();
+    }
+
+    @Override
+    public LatencySnapshot getOfferToLaunch() {
+        return LatencySnapshot.of(offerToLaunch);
+    }
+
+    @Override
+    public LatencySnapshot getLaunchToRunning() {
+        return LatencySnapshot.of(launchToRunning);
+    }
+
+    @Override
+    public LatencySnapshot getRunningToFinished() {
+        return LatencySnapshot.of(runningToFinished);
+    }
+
+    @Override
+    public long getExecutorTasksRunning() {
+        return executorTasksRunning.get();
+    }
+
+    @Override
+    public long getExecutorTasksKilled() {
+        return executorTasksKilled.sum();
+    }
+
+    @Override
+    public long getWindowsScanned() {
+        return windowsScanned.sum();
+    }
+
+    @Override
+    public LatencySnapshot getExecutorQueueTime() {
+        return LatencySnapshot.of(executorQueueTime);
+    }
+
+    @Override
+    public LatencySnapshot getExecutorRunTime() {
+        return LatencySnapshot.of(executorRunTime);
+    }
+
+    /**
+     * One line with everything that has been recorded so far; the Scheduler or Executor part is left out when
+     * this JVM doesn't run one.
+     */
+    @Override
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder("Metrics:");
+        if (getOffersReceived() > 0) {
+            summary.append(" offers=").append(getOffersReceived())
+                    .append(" declined=").append(getOffersDeclined())
+                    .append(" launched=").append(getTasksLaunched())
+                    .append(" finished=").append(getTasksFinished())
+                    .append(" failed=").append(getTasksFailed())
+                    .append(" inFlight=").append(getTasksInFlight())
+                    .append(" taskBytes=").append(getTaskPayloadBytes())
+                    .append(" resultBytes=").append(getResultPayloadBytes())
+                    .append(" | offerToLaunch ").append(getOfferToLaunch())
+                    .append(" | launchToRunning ").append(getLaunchToRunning())
+                    .append(" | runningToFinished ").append(getRunningToFinished());
+        }
+        if (executorQueueTime.getCount() > 0) {
+            summary.append(" | executor running=").append(getExecutorTasksRunning())
+                    .append(" killed=").append(getExecutorTasksKilled())
+                    .append(" windows=").append(getWindowsScanned())
+                    .append(" | queue ").append(getExecutorQueueTime())
+                    .append(" | run ").append(getExecutorRunTime());
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,42 @@
+package com.andresolarte.mesos.framework.metrics;
+
+/**
+ * What {@link FrameworkMetrics} shows over JMX. Scheduler attributes stay at zero in an Executor JVM, and the other
+ * way around.
+ */
+public interface FrameworkMetricsMXBean {
+
+    long getOffersReceived();
+
+    long getOffersDeclined();
+
+    long getTasksLaunched();
+
+    long getTasksFinished();
+
+    long getTasksFailed();
+
+    long getTasksInFlight();
+
+    long getTaskPayloadBytes();
+
+    long getResultPayloadBytes();
+
+    LatencySnapshot getOfferToLaunch();
+
+    LatencySnapshot getLaunchToRunning();
+
+    LatencySnapshot getRunningToFinished();
+
+    long getExecutorTasksRunning();
+
+    long getExecutorTasksKilled();
+
+    long getWindowsScanned();
+
+    LatencySnapshot getExecutorQueueTime();
+
+    LatencySnapshot getExecutorRunTime();
+
+    String getSummary();
+}
@@ -0,0 +1,67 @@
+package com.andresolarte.mesos.framework.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Summary of a {@link LatencyHistogram} at one point in time, in milliseconds. Shows up in JMX as composite data.
+ */
+public class LatencySnapshot {
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final long count;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+
+    @ConstructorProperties({"count", "meanMillis", "p50Millis", "p90Millis", "p99Millis", "maxMillis"})
+    public LatencySnapshot(long count, double meanMillis, double p50Millis, double p90Millis, double p99Millis,
+                           double maxMillis) {
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    public static LatencySnapshot of(LatencyHistogram histogram) {
+        return new LatencySnapshot(histogram.getCount(),
+                histogram.getMean() / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(90) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                histogram.getMax() / NANOS_PER_MILLI);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+                count, p50Millis, p90Millis, p99Millis, maxMillis);
+    }
+}
@@ -9,9 +9,16 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Converts the DTOs to and from the byte payloads carried by Mesos messages.
+ * Requests and results use the compact {@link WireFormat}; anything else goes through Java serialization.
+ * Both formats are detected from the first byte when reading. The framework messages of streaming workers always use
+ * the compact format.
+ */
 public class ByteStringUtils {
 
     private final static Logger LOGGER = Logger.getLogger(ByteStringUtils.class.getName());
@@ -32,7 +39,45 @@ public class ByteStringUtils {
         return null;
     }
 
+    /**
+     * Encodes a {@link com.andresolarte.mesos.framework.dto.WorkMessage} or a
+     * {@link com.andresolarte.mesos.framework.dto.ResultMessage} for a framework message, with the {@link WireFormat}.
+     * {@link #fromBytes(byte[])} reads it back.
+     */
+    public static byte[] toMessageBytes(Serializable message) {
+        return WireFormat.encodeMessage(message);
+    }
+
+    /**
+     * Reads back a framework message written by {@link #toMessageBytes(Serializable)}.
+     *
+     * @return null if the bytes aren't a message of the given type
+     */
+    public static <T> T fromMessageBytes(byte[] bytes, Class<T> type) {
+        Object message;
+        try {
+            message = fromBytes(bytes);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Undecodable framework message", e);
+            return null;
+        }
+        return type.isInstance(message) ? type.cast(message) : null;
+    }
+
+    /**
+     * The attempt ID of a framework message that can't be read as a whole, if at least that much of it is intact.
+     *
+     * @return null if not even the attempt ID can be read
+     */
+    public static String attemptIdOf(byte[] bytes) {
+        return WireFormat.readAttemptId(bytes);
+    }
+
+    @SuppressWarnings("unchecked")
     public static <T> T fromBytes(byte[] bytes) {
+        if (bytes.length > 0 && (bytes[0] & 0xFF) == WireFormat.FORMAT_V1) {
+            return (T) WireFormat.decode(ByteBuffer.wrap(bytes));
+        }
         ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
         try {
             ObjectInputStream in = new ObjectInputStream(bis);
@@ -48,10 +93,18 @@ public class ByteStringUtils {
     }
 
     public static ByteString toByteString(Serializable result) {
+        if (WireFormat.supports(result)) {
+            return WireFormat.encode(result);
+        }
         return ByteString.copyFrom(toBytes(result));
     }
 
+    @SuppressWarnings("unchecked")
     public static <T> T fromByteString(ByteString byteString) {
+        ByteBuffer buffer = byteString.asReadOnlyByteBuffer();
+        if (WireFormat.isBinary(buffer)) {
+            return (T) WireFormat.decode(buffer);
+        }
         return fromBytes(byteString.toByteArray());
     }
 }
@@ -0,0 +1,51 @@
+package com.andresolarte.mesos.framework.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size bit set that can be updated from several threads without locking.
+ */
+public class ConcurrentBitSet {
+    private final AtomicLongArray words;
+    private final int size;
+
+    public ConcurrentBitSet(int size) {
+        this.size = size;
+        this.words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    /**
+     * Sets the bit.
+     *
+     * @return true if this call set it, false if it was already set
+     */
+    public boolean set(int index) {
+        checkIndex(index);
+        int word = index >>> 6;
+        long mask = 1L << index;
+        while (true) {
+            long current = words.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(word, current, current | mask)) {
+                return true;
+            }
+        }
+    }
+
+    public boolean get(int index) {
+        checkIndex(index);
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of 0.." + (size - 1));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.andresolarte.mesos.framework.util;
+
+import java.math.BigInteger;
+
+/**
+ * Products of decimal digits, for windows too wide to multiply out in a long.
+ * <p>
+ * Every digit is a product of the primes 2, 3, 5 and 7, so the product of a window is fully described by how many
+ * zeros it holds and the exponents of those four primes: a few counters that can be rolled along the input like
+ * the product itself. Two products are compared by the logarithm of their exponents, and only when the logarithms
+ * are too close to tell apart are the exact products worked out. The exact product of a single window, e.g. the
+ * winner, is only built on demand.
+ */
+public final class DigitProducts {
+    //Exponents of 2, 3, 5 and 7 in each digit
+    public static final int[] TWOS = {0, 0, 1, 0, 2, 0, 1, 0, 3, 0};
+    public static final int[] THREES = {0, 0, 0, 1, 0, 0, 1, 0, 0, 2};
+    public static final int[] FIVES = {0, 0, 0, 0, 0, 1, 0, 0, 0, 0};
+    public static final int[] SEVENS = {0, 0, 0, 0, 0, 0, 0, 1, 0, 0};
+
+    public static final double LOG_2 = Math.log(2);
+    public static final double LOG_3 = Math.log(3);
+    public static final double LOG_5 = Math.log(5);
+    public static final double LOG_7 = Math.log(7);
+
+    /**
+     * Logarithms closer than this are compared exactly. Rounding errors stay orders of magnitude below it for
+     * windows of up to millions of digits.
+     */
+    private static final double LOG_TOLERANCE = 1e-6;
+
+    private static final BigInteger FIVE = BigInteger.valueOf(5);
+    private static final BigInteger SEVEN = BigInteger.valueOf(7);
+
+    private DigitProducts() {
+    }
+
+    public static double log(int twos, int threes, int fives, int sevens) {
+        return twos * LOG_2 + threes * LOG_3 + fives * LOG_5 + sevens * LOG_7;
+    }
+
+    /**
+     * Compares 2^twos * 3^threes * 5^fives * 7^sevens with 1, where the exponents are the difference between the
+     * exponents of two products.
+     *
+     * @return the sign of the comparison of the two products
+     */
+    public static int compareExponents(int twos, int threes, int fives, int sevens) {
+        double log = log(twos, threes, fives, sevens);
+        if (log > LOG_TOLERANCE) {
+            return 1;
+        }
+        if (log < -LOG_TOLERANCE) {
+            return -1;
+        }
+        if (twos == 0 && threes == 0 && fives == 0 && sevens == 0) {
+            return 0;
+        }
+        BigInteger left = product(Math.max(twos, 0), Math.max(threes, 0), Math.max(fives, 0), Math.max(sevens, 0));
+        BigInteger right = product(Math.max(-twos, 0), Math.max(-threes, 0), Math.max(-fives, 0),
+                Math.max(-sevens, 0));
+        return left.compareTo(right);
+    }
+
+    /**
+     * The zeros and the prime exponents of the product of the digits, as {zeros, twos, threes, fives, sevens}.
+     */
+    public static int[] exponents(byte[] digits, int start, int window) {
+        int[] exponents = new int[5];
+        for (int i = start; i < start + window; i++) {
+            add(exponents, digits[i]);
+        }
+        return exponents;
+    }
+
+    /**
+     * @see #exponents(byte[], int, int)
+     */
+    public static int[] exponents(CharSequence digits) {
+        int[] exponents = new int[5];
+        for (int i = 0; i < digits.length(); i++) {
+            add(exponents, digits.charAt(i) - '0');
+        }
+        return exponents;
+    }
+
+    private static void add(int[] exponents, int digit) {
+        if (digit == 0) {
+            exponents[0]++;
+        } else {
+            exponents[1] += TWOS[digit];
+            exponents[2] += THREES[digit];
+            exponents[3] += FIVES[digit];
+            exponents[4] += SEVENS[digit];
+        }
+    }
+
+    /**
+     * Counts the digits in [from, to) into {@code counts}, indexed by digit.
+     */
+    public static void count(byte[] digits, int from, int to, int[] counts) {
+        for (int i = from; i < to; i++) {
+            counts[digits[i]]++;
+        }
+    }
+
+    /**
+     * A bound on the product of any window over digits with the given {@link #count counts}: the product of the
+     * largest digits there are, as {@link #exponents(byte[], int, int)}. It holds a zero when there aren't enough
+     * digits other than zero to fill a window.
+     */
+    public static int[] upperBound(int[] counts, int window) {
+        int[] exponents = new int[5];
+        int left = window;
+        for (int digit = 9; digit > 0 && left > 0; digit--) {
+            int taken = Math.min(left, counts[digit]);
+            exponents[1] += taken * TWOS[digit];
+            exponents[2] += taken * THREES[digit];
+            exponents[3] += taken * FIVES[digit];
+            exponents[4] += taken * SEVENS[digit];
+            left -= taken;
+        }
+        exponents[0] = left;
+        return exponents;
+    }
+
+    /**
+     * Compares two products given by their {@link #exponents(byte[], int, int)}. Any product with a zero is 0.
+     */
+    public static int compare(int[] left, int[] right) {
+        if (left[0] > 0 || right[0] > 0) {
+            return Boolean.compare(left[0] == 0, right[0] == 0);
+        }
+        return compareExponents(left[1] - right[1], left[2] - right[2], left[3] - right[3], left[4] - right[4]);
+    }
+
+    /**
+     * The exact product given by its {@link #exponents(byte[], int, int)}.
+     */
+    public static BigInteger product(int[] exponents) {
+        if (exponents[0] > 0) {
+            return BigInteger.ZERO;
+        }
+        return product(exponents[1], exponents[2], exponents[3], exponents[4]);
+    }
+
+    private static BigInteger product(int twos, int threes, int fives, int sevens) {
+        return BigInteger.valueOf(3).pow(threes).multiply(FIVE.pow(fives)).multiply(SEVEN.pow(sevens))
+                .shiftLeft(twos);
+    }
+}
@@ -0,0 +1,29 @@
+package com.andresolarte.mesos.framework.util;
+
+import org.apache.mesos.Protos;
+
+import java.util.List;
+
+/**
+ * Helpers to read the scalar resources (cpus, mem) out of offers and tasks.
+ */
+public class ResourceUtils {
+
+    public static double getScalar(List<Protos.Resource> resources, String name) {
+        double value = 0;
+        for (Protos.Resource resource : resources) {
+            if (resource.getName().equals(name) && resource.getType() == Protos.Value.Type.SCALAR) {
+                value += resource.getScalar().getValue();
+            }
+        }
+        return value;
+    }
+
+    public static double getScalar(Protos.Offer offer, String name) {
+        return getScalar(offer.getResourcesList(), name);
+    }
+
+    public static double getScalar(Protos.TaskInfo task, String name) {
+        return getScalar(task.getResourcesList(), name);
+    }
+}
@@ -0,0 +1,584 @@
+package com.andresolarte.mesos.framework.util;
+
+import com.andresolarte.mesos.framework.dto.Request;
+import com.andresolarte.mesos.framework.dto.RequestBatch;
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.dto.ResultMessage;
+import com.andresolarte.mesos.framework.dto.WorkMessage;
+import com.google.protobuf.ByteString;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding for the DTOs that travel inside TaskInfo and TaskStatus payloads.
+ * <p>
+ * Every payload starts with a format byte. Java serialization streams always start with 0xAC, so the two formats
+ * can be told apart from the first byte alone. The binary format then carries a type byte, varint headers and the
+ * digits packed two per byte (high nibble first). Requests that point at a staged input carry the input ID and the
+ * range instead of the digits. In a batch, every request carries its own type byte. A request with a floor has
+ * {@link #FLOOR_FLAG} set in its type byte, and the four prime exponents of the floor after the window size. A request
+ * for more than the best window has {@link #TOP_FLAG} set, and the number of windows after the floor; a result with
+ * top results has it set too, and its runners up after its own window, each as a total and its packed digits.
+ * <p>
+ * The framework messages exchanged with streaming workers use the same format byte. They carry their strings as
+ * UTF-8 and the payload or result of a batch as an opaque blob, each prefixed with its length; a field that may be
+ * null has its length written off by one, so that zero stands for null.
+ */
+public final class WireFormat {
+
+    static final int FORMAT_V1 = 0x01;
+    static final int JAVA_SERIALIZATION = 0xAC;
+
+    static final int TYPE_REQUEST = 1;
+    static final int TYPE_RESULT = 2;
+    static final int TYPE_REQUEST_BATCH = 3;
+    static final int TYPE_REQUEST_REFERENCE = 4;
+    static final int TYPE_WORK_MESSAGE = 5;
+    static final int TYPE_RESULT_MESSAGE = 6;
+    static final int FLOOR_FLAG = 0x80;
+    static final int TOP_FLAG = 0x40;
+
+    private static final int SCRATCH_SIZE = 4096;
+
+    private WireFormat() {
+    }
+
+    /**
+     * Returns true if the object can be written with the binary format.
+     */
+    static boolean supports(Object value) {
+        if (value instanceof Request) {
+            return packable((Request) value);
+        }
+        if (value instanceof RequestBatch) {
+            for (Request request : ((RequestBatch) value).getRequests()) {
+                if (!packable(request)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (value instanceof Result) {
+            for (Result window : ((Result) value).getWindows()) {
+                String sequence = window.getDigitSequence();
+                if (sequence != null && !packable(sequence)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the payload starts with the binary format byte.
+     */
+    static boolean isBinary(ByteBuffer buffer) {
+        return buffer.remaining() > 0 && (buffer.get(buffer.position()) & 0xFF) == FORMAT_V1;
+    }
+
+    static ByteString encode(Object value) {
+        if (value instanceof Request) {
+            return encodeRequest((Request) value);
+        }
+        if (value instanceof RequestBatch) {
+            return encodeRequestBatch((RequestBatch) value);
+        }
+        return encodeResult((Result) value);
+    }
+
+    static Object decode(ByteBuffer buffer) {
+        int format = buffer.get() & 0xFF;
+        if (format != FORMAT_V1) {
+            throw new IllegalArgumentException("Unknown wire format " + format);
+        }
+        int type = buffer.get() & 0xFF;
+        switch (type & ~(FLOOR_FLAG | TOP_FLAG)) {
+            case TYPE_REQUEST:
+            case TYPE_REQUEST_REFERENCE:
+                return readRequest(type, buffer);
+            case TYPE_RESULT:
+                return decodeResult(type, buffer);
+            case TYPE_REQUEST_BATCH:
+                return decodeRequestBatch(buffer);
+            case TYPE_WORK_MESSAGE:
+                return decodeWorkMessage(buffer);
+            case TYPE_RESULT_MESSAGE:
+                return decodeResultMessage(buffer);
+            default:
+                throw new IllegalArgumentException("Unknown payload type " + type);
+        }
+    }
+
+    /**
+     * Encodes a {@link WorkMessage} or a {@link ResultMessage} straight into the array a framework message carries.
+     */
+    static byte[] encodeMessage(Object message) {
+        if (message instanceof WorkMessage) {
+            return encodeWorkMessage((WorkMessage) message);
+        }
+        if (message instanceof ResultMessage) {
+            return encodeResultMessage((ResultMessage) message);
+        }
+        throw new IllegalArgumentException("Not a framework message: " + message);
+    }
+
+    private static byte[] encodeWorkMessage(WorkMessage work) {
+        byte[] attemptId = utf8(work.getAttemptId());
+        byte[] jobName = utf8(work.getJobName());
+        byte[] payload = work.getPayload();
+        ByteBuffer buffer = ByteBuffer.allocate(2 + blobSize(attemptId) + nullableBlobSize(jobName)
+                + varIntSize(work.getParallelism()) + blobSize(payload));
+        buffer.put((byte) FORMAT_V1);
+        buffer.put((byte) TYPE_WORK_MESSAGE);
+        putBlob(buffer, attemptId);
+        putNullableBlob(buffer, jobName);
+        putVarLong(buffer, work.getParallelism() & 0xFFFFFFFFL);
+        putBlob(buffer, payload);
+        return buffer.array();
+    }
+
+    private static WorkMessage decodeWorkMessage(ByteBuffer buffer) {
+        String attemptId = string(getBlob(buffer));
+        String jobName = string(getNullableBlob(buffer));
+        int parallelism = getVarInt(buffer);
+        return new WorkMessage(attemptId, jobName, parallelism, getBlob(buffer));
+    }
+
+    /**
+     * Reads only the attempt ID both framework messages start with.
+     *
+     * @return null if the message doesn't start with one
+     */
+    static String readAttemptId(byte[] message) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(message);
+            if ((buffer.get() & 0xFF) != FORMAT_V1) {
+                return null;
+            }
+            int type = buffer.get() & 0xFF;
+            if (type != TYPE_WORK_MESSAGE && type != TYPE_RESULT_MESSAGE) {
+                return null;
+            }
+            return string(getBlob(buffer));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static byte[] encodeResultMessage(ResultMessage answer) {
+        byte[] attemptId = utf8(answer.getAttemptId());
+        byte[] result = answer.getResult();
+        byte[] error = utf8(answer.getError());
+        ByteBuffer buffer = ByteBuffer.allocate(2 + blobSize(attemptId) + nullableBlobSize(result)
+                + nullableBlobSize(error));
+        buffer.put((byte) FORMAT_V1);
+        buffer.put((byte) TYPE_RESULT_MESSAGE);
+        putBlob(buffer, attemptId);
+        putNullableBlob(buffer, result);
+        putNullableBlob(buffer, error);
+        return buffer.array();
+    }
+
+    private static ResultMessage decodeResultMessage(ByteBuffer buffer) {
+        String attemptId = string(getBlob(buffer));
+        byte[] result = getNullableBlob(buffer);
+        String error = string(getNullableBlob(buffer));
+        return error == null ? ResultMessage.finished(attemptId, result) : ResultMessage.failed(attemptId, error);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] utf8) {
+        return utf8 == null ? null : new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static int blobSize(byte[] blob) {
+        return varIntSize(blob.length) + blob.length;
+    }
+
+    private static int nullableBlobSize(byte[] blob) {
+        return blob == null ? 1 : varIntSize(blob.length + 1) + blob.length;
+    }
+
+    private static void putBlob(ByteBuffer buffer, byte[] blob) {
+        putVarLong(buffer, blob.length);
+        buffer.put(blob);
+    }
+
+    private static void putNullableBlob(ByteBuffer buffer, byte[] blob) {
+        if (blob == null) {
+            buffer.put((byte) 0);
+            return;
+        }
+        putVarLong(buffer, blob.length + 1);
+        buffer.put(blob);
+    }
+
+    private static byte[] getBlob(ByteBuffer buffer) {
+        byte[] blob = new byte[getVarInt(buffer)];
+        buffer.get(blob);
+        return blob;
+    }
+
+    private static byte[] getNullableBlob(ByteBuffer buffer) {
+        int length = getVarInt(buffer);
+        if (length == 0) {
+            return null;
+        }
+        byte[] blob = new byte[length - 1];
+        buffer.get(blob);
+        return blob;
+    }
+
+    private static ByteString encodeRequest(Request request) {
+        Writer writer = new Writer(1 + requestSize(request));
+        writer.put(FORMAT_V1);
+        writeRequest(writer, request);
+        return writer.finish();
+    }
+
+    private static ByteString encodeRequestBatch(RequestBatch batch) {
+        List<Request> requests = batch.getRequests();
+        int size = 2 + varIntSize(requests.size());
+        for (Request request : requests) {
+            size += requestSize(request);
+        }
+        Writer writer = new Writer(size);
+        writer.put(FORMAT_V1);
+        writer.put(TYPE_REQUEST_BATCH);
+        writer.putVarInt(requests.size());
+        for (Request request : requests) {
+            writeRequest(writer, request);
+        }
+        return writer.finish();
+    }
+
+    private static RequestBatch decodeRequestBatch(ByteBuffer buffer) {
+        int count = getVarInt(buffer);
+        List<Request> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            requests.add(readRequest(buffer.get() & 0xFF, buffer));
+        }
+        return new RequestBatch(requests);
+    }
+
+    /**
+     * Size of a request, including its type byte.
+     */
+    private static int requestSize(Request request) {
+        int size = 1 + varIntSize(request.getNumberOfDigits()) + floorSize(request.getFloor());
+        if (request.getTopResults() > 1) {
+            size += varIntSize(request.getTopResults());
+        }
+        if (request.isReference()) {
+            int idLength = request.getInputId().getBytes(StandardCharsets.UTF_8).length;
+            return size + varIntSize(idLength) + idLength
+                    + varLongSize(request.getOffset()) + varIntSize(request.getLength());
+        }
+        byte[] digits = request.getDigitSequence();
+        return size + varIntSize(digits.length) + packedSize(digits.length);
+    }
+
+    private static int floorSize(int[] floor) {
+        if (floor == null) {
+            return 0;
+        }
+        int size = 0;
+        for (int i = 1; i < floor.length; i++) {
+            size += varIntSize(floor[i]);
+        }
+        return size;
+    }
+
+    private static void writeFloor(Writer writer, int[] floor) {
+        if (floor != null) {
+            for (int i = 1; i < floor.length; i++) {
+                writer.putVarInt(floor[i]);
+            }
+        }
+    }
+
+    private static int[] readFloor(int type, ByteBuffer buffer) {
+        if ((type & FLOOR_FLAG) == 0) {
+            return null;
+        }
+        int[] floor = new int[5];
+        for (int i = 1; i < floor.length; i++) {
+            floor[i] = getVarInt(buffer);
+        }
+        return floor;
+    }
+
+    private static void writeRequest(Writer writer, Request request) {
+        int flags = (request.getFloor() == null ? 0 : FLOOR_FLAG) | (request.getTopResults() > 1 ? TOP_FLAG : 0);
+        if (request.isReference()) {
+            writer.put(TYPE_REQUEST_REFERENCE | flags);
+            writer.putVarInt(request.getNumberOfDigits());
+            writeFloor(writer, request.getFloor());
+            writeTopResults(writer, request);
+            byte[] id = request.getInputId().getBytes(StandardCharsets.UTF_8);
+            writer.putVarInt(id.length);
+            for (byte b : id) {
+                writer.put(b);
+            }
+            writer.putVarLong(request.getOffset());
+            writer.putVarInt(request.getLength());
+            return;
+        }
+        byte[] digits = request.getDigitSequence();
+        writer.put(TYPE_REQUEST | flags);
+        writer.putVarInt(request.getNumberOfDigits());
+        writeFloor(writer, request.getFloor());
+        writeTopResults(writer, request);
+        writer.putVarInt(digits.length);
+        for (int i = 0; i + 1 < digits.length; i += 2) {
+            writer.put(digits[i] << 4 | digits[i + 1]);
+        }
+        if ((digits.length & 1) != 0) {
+            writer.put(digits[digits.length - 1] << 4);
+        }
+    }
+
+    private static void writeTopResults(Writer writer, Request request) {
+        if (request.getTopResults() > 1) {
+            writer.putVarInt(request.getTopResults());
+        }
+    }
+
+    private static Request readRequest(int type, ByteBuffer buffer) {
+        int numberOfDigits = getVarInt(buffer);
+        int[] floor = readFloor(type, buffer);
+        int topResults = (type & TOP_FLAG) == 0 ? 1 : getVarInt(buffer);
+        Request request = readRequest(type & ~(FLOOR_FLAG | TOP_FLAG), numberOfDigits, buffer);
+        request.setFloor(floor);
+        request.setTopResults(topResults);
+        return request;
+    }
+
+    private static Request readRequest(int type, int numberOfDigits, ByteBuffer buffer) {
+        if (type == TYPE_REQUEST_REFERENCE) {
+            byte[] id = new byte[getVarInt(buffer)];
+            buffer.get(id);
+            long offset = getVarLong(buffer);
+            int length = getVarInt(buffer);
+            return new Request(new String(id, StandardCharsets.UTF_8), offset, length, numberOfDigits);
+        }
+        if (type != TYPE_REQUEST) {
+            throw new IllegalArgumentException("Unknown request type " + type);
+        }
+        byte[] digits = new byte[getVarInt(buffer)];
+        for (int i = 0; i + 1 < digits.length; i += 2) {
+            int packed = buffer.get();
+            digits[i] = (byte) (packed >> 4 & 0x0F);
+            digits[i + 1] = (byte) (packed & 0x0F);
+        }
+        if ((digits.length & 1) != 0) {
+            digits[digits.length - 1] = (byte) (buffer.get() >> 4 & 0x0F);
+        }
+        return new Request(digits, numberOfDigits);
+    }
+
+    private static ByteString encodeResult(Result result) {
+        List<Result> runnersUp = result.getRunnersUp();
+        int size = 2 + windowSize(result);
+        if (result.isTopResults()) {
+            size += varIntSize(runnersUp.size());
+            for (Result runnerUp : runnersUp) {
+                size += windowSize(runnerUp);
+            }
+        }
+        Writer writer = new Writer(size);
+        writer.put(FORMAT_V1);
+        writer.put(TYPE_RESULT | (result.isTopResults() ? TOP_FLAG : 0));
+        writeWindow(writer, result);
+        if (result.isTopResults()) {
+            writer.putVarInt(runnersUp.size());
+            for (Result runnerUp : runnersUp) {
+                writeWindow(writer, runnerUp);
+            }
+        }
+        return writer.finish();
+    }
+
+    private static Result decodeResult(int type, ByteBuffer buffer) {
+        Result result = readWindow(buffer);
+        if ((type & TOP_FLAG) != 0) {
+            int count = getVarInt(buffer);
+            List<Result> runnersUp = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                runnersUp.add(readWindow(buffer));
+            }
+            result.setRunnersUp(runnersUp);
+        }
+        return result;
+    }
+
+    /**
+     * Size of the total and the digits of a result, without its runners up.
+     */
+    private static int windowSize(Result result) {
+        String sequence = result.getDigitSequence();
+        // The sequence length is written off by one, so that zero can stand for a null sequence
+        int length = sequence == null ? 0 : sequence.length() + 1;
+        return varLongSize(zigZag(result.getTotal())) + varIntSize(length)
+                + (sequence == null ? 0 : packedSize(sequence.length()));
+    }
+
+    private static void writeWindow(Writer writer, Result result) {
+        String sequence = result.getDigitSequence();
+        writer.putVarLong(zigZag(result.getTotal()));
+        writer.putVarInt(sequence == null ? 0 : sequence.length() + 1);
+        if (sequence != null) {
+            int digits = sequence.length();
+            for (int i = 0; i + 1 < digits; i += 2) {
+                writer.put((sequence.charAt(i) - '0') << 4 | (sequence.charAt(i + 1) - '0'));
+            }
+            if ((digits & 1) != 0) {
+                writer.put((sequence.charAt(digits - 1) - '0') << 4);
+            }
+        }
+    }
+
+    private static Result readWindow(ByteBuffer buffer) {
+        Result result = new Result();
+        result.setTotal(unZigZag(getVarLong(buffer)));
+        int length = getVarInt(buffer);
+        if (length > 0) {
+            int digits = length - 1;
+            char[] sequence = new char[digits];
+            for (int i = 0; i + 1 < digits; i += 2) {
+                int packed = buffer.get();
+                sequence[i] = (char) ('0' + (packed >> 4 & 0x0F));
+                sequence[i + 1] = (char) ('0' + (packed & 0x0F));
+            }
+            if ((digits & 1) != 0) {
+                sequence[digits - 1] = (char) ('0' + (buffer.get() >> 4 & 0x0F));
+            }
+            result.setDigitSequence(new String(sequence));
+        }
+        return result;
+    }
+
+    private static boolean packable(Request request) {
+        if (request.isReference()) {
+            return request.getInputId() != null;
+        }
+        byte[] digits = request.getDigitSequence();
+        for (int digit : digits) {
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean packable(String sequence) {
+        for (int i = 0; i < sequence.length(); i++) {
+            char c = sequence.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int packedSize(int digits) {
+        return (digits + 1) >>> 1;
+    }
+
+    static int varIntSize(int value) {
+        return varLongSize(value & 0xFFFFFFFFL);
+    }
+
+    static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getVarInt(ByteBuffer buffer) {
+        return (int) getVarLong(buffer);
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    /**
+     * Writes into a ByteString.Output sized to the exact payload length. The bytes are staged through a small
+     * scratch block, and since the output buffer ends up exactly full, toByteString() hands it over without a copy.
+     */
+    static final class Writer {
+        private final ByteString.Output output;
+        private final byte[] scratch;
+        private int position;
+
+        Writer(int size) {
+            output = ByteString.newOutput(size);
+            scratch = new byte[Math.min(size, SCRATCH_SIZE)];
+        }
+
+        void put(int value) {
+            if (position == scratch.length) {
+                flush();
+            }
+            scratch[position++] = (byte) value;
+        }
+
+        void putVarInt(int value) {
+            putVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void putVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                put((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            put((int) value);
+        }
+
+        ByteString finish() {
+            flush();
+            return output.toByteString();
+        }
+
+        private void flush() {
+            output.write(scratch, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.andresolarte.mesos.framework;
+
+import com.andresolarte.mesos.framework.input.DigitInput;
+import com.andresolarte.mesos.framework.job.CombiningCoordinator;
+import com.andresolarte.mesos.framework.job.Combiner;
+import com.andresolarte.mesos.framework.job.JobCoordinator;
+import com.andresolarte.mesos.framework.job.JobDefinition;
+import com.andresolarte.mesos.framework.job.JobRegistry;
+import com.andresolarte.mesos.framework.job.Splitter;
+import com.andresolarte.mesos.framework.job.WorkerKernel;
+import com.andresolarte.mesos.framework.util.ByteStringUtils;
+import org.apache.mesos.Protos;
+import org.apache.mesos.SchedulerDriver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestSchedulerTest {
+
+    private final CountingJob job = new CountingJob();
+    private final List<Protos.TaskInfo> launched = new ArrayList<>();
+    private final List<JobRun> completed = new ArrayList<>();
+    private SchedulerDriver driver;
+    private TestScheduler scheduler;
+    private int offers = 0;
+
+    @Before
+    public void startScheduler() {
+        JobRegistry.register(job);
+        // Long running, so that the Scheduler starts without a job and never stops the driver
+        System.setProperty("scheduler.jobDir", "unused");
+        driver = (SchedulerDriver) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{SchedulerDriver.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("acceptOffers")) {
+                        for (Object operation : (Collection<?>) args[1]) {
+                            launched.addAll(((Protos.Offer.Operation) operation).getLaunch().getTaskInfosList());
+                        }
+                    }
+                    return method.getReturnType() == Protos.Status.class ? Protos.Status.DRIVER_RUNNING : null;
+                });
+        Protos.ExecutorInfo executor = Protos.ExecutorInfo.newBuilder()
+                .setExecutorId(Protos.ExecutorID.newBuilder().setValue("executor"))
+                .setCommand(Protos.CommandInfo.newBuilder().setValue("true"))
+                .build();
+        scheduler = new TestScheduler(true, executor);
+        scheduler.registered(driver, Protos.FrameworkID.newBuilder().setValue("framework").build(),
+                Protos.MasterInfo.newBuilder().setId("master").setIp(0).setPort(5050).build());
+    }
+
+    @After
+    public void clearProperties() {
+        System.clearProperty("scheduler.jobDir");
+    }
+
+    @Test
+    public void sharesOffersByWeight() {
+        JobRun light = submit(100, 1);
+        JobRun heavy = submit(100, 3);
+        offer(8);
+        assertEquals(8, launched.size());
+        assertEquals(2, tasksOf(light));
+        assertEquals(6, tasksOf(heavy));
+
+        // Finishing work of the heavy job frees its share, which it gets back first
+        finish(launched.get(launched.size() - 1));
+        finish(launched.get(launched.size() - 2));
+        launched.clear();
+        offer(2);
+        assertEquals(2, tasksOf(heavy));
+    }
+
+    @Test
+    public void closesTheCoordinatorOfACompletedJob() {
+        JobRun run = submit(2, 1);
+        offer(2);
+        for (Protos.TaskInfo task : new ArrayList<>(launched)) {
+            assertFalse(job.closed.get(0));
+            finish(task);
+        }
+        assertEquals(1, completed.size());
+        assertFalse(run.isFailed());
+        assertEquals(2, run.getResult());
+        assertTrue(job.closed.get(0));
+    }
+
+    @Test
+    public void closesTheCoordinatorOfAFailedJob() {
+        JobRun run = submit(1, 1);
+        for (int attempt = 0; attempt < 10 && completed.isEmpty(); attempt++) {
+            launched.clear();
+            offer(1);
+            assertEquals(1, launched.size());
+            scheduler.statusUpdate(driver, status(launched.get(0), Protos.TaskState.TASK_FAILED).build());
+        }
+        assertEquals(1, completed.size());
+        assertTrue(run.isFailed());
+        assertTrue(job.closed.get(0));
+    }
+
+    private JobRun submit(int units, double weight) {
+        Properties parameters = new Properties();
+        parameters.setProperty("units", Integer.toString(units));
+        parameters.setProperty("weight", Double.toString(weight));
+        return scheduler.submit(job.getName(), null, parameters, completed::add);
+    }
+
+    private void offer(int cpus) {
+        offers++;
+        Protos.Offer offer = Protos.Offer.newBuilder()
+                .setId(Protos.OfferID.newBuilder().setValue("offer-" + offers))
+                .setFrameworkId(Protos.FrameworkID.newBuilder().setValue("framework"))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue("slave"))
+                .setHostname("slave")
+                .addResources(scalar("cpus", cpus))
+                .addResources(scalar("mem", 1024))
+                .build();
+        List<Protos.Offer> offered = new ArrayList<>();
+        offered.add(offer);
+        scheduler.resourceOffers(driver, offered);
+    }
+
+    private void finish(Protos.TaskInfo task) {
+        // Every unit counts for one
+        scheduler.statusUpdate(driver, status(task, Protos.TaskState.TASK_FINISHED)
+                .setData(ByteStringUtils.toByteString(1))
+                .build());
+    }
+
+    private static Protos.TaskStatus.Builder status(Protos.TaskInfo task, Protos.TaskState state) {
+        return Protos.TaskStatus.newBuilder().setTaskId(task.getTaskId()).setState(state);
+    }
+
+    private int tasksOf(JobRun run) {
+        int tasks = 0;
+        for (Protos.TaskInfo task : launched) {
+            if (run.getId().equals(JobRun.runIdOf(task.getTaskId().getValue()))) {
+                tasks++;
+            }
+        }
+        return tasks;
+    }
+
+    private static Protos.Resource scalar(String name, double value) {
+        return Protos.Resource.newBuilder()
+                .setName(name)
+                .setType(Protos.Value.Type.SCALAR)
+                .setScalar(Protos.Value.Scalar.newBuilder().setValue(value))
+                .build();
+    }
+
+    /**
+     * A job of {@code units} units that counts its finished units, and records when its splitter is closed.
+     */
+    private static class CountingJob implements JobDefinition<Integer, Integer> {
+        //By submission
+        private final List<Boolean> closed = new ArrayList<>();
+
+        @Override
+        public String getName() {
+            return "counting";
+        }
+
+        @Override
+        public Splitter<Integer> createSplitter(DigitInput input, String sharedInputId) {
+            throw new UnsupportedOperationException("Only submitted with parameters");
+        }
+
+        @Override
+        public JobCoordinator<Integer, Integer> createCoordinator(DigitInput input, String sharedInputId,
+                                                                 Properties parameters) {
+            int index = closed.size();
+            closed.add(false);
+            int units = Integer.parseInt(parameters.getProperty("units"));
+            return new CombiningCoordinator<>(
+                    new ClosingSplitter(units, () -> closed.set(index, true)), getCombiner());
+        }
+
+        @Override
+        public WorkerKernel<Integer, Integer> createKernel(int parallelism) {
+            return unit -> 1;
+        }
+
+        @Override
+        public Combiner<Integer> getCombiner() {
+            return Integer::sum;
+        }
+    }
+
+    private static class ClosingSplitter implements Splitter<Integer>, AutoCloseable {
+        private final int units;
+        private final Runnable onClose;
+        private boolean split = false;
+
+        ClosingSplitter(int units, Runnable onClose) {
+            this.units = units;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public int split(int cores) {
+            split = true;
+            return units;
+        }
+
+        @Override
+        public boolean isSplit() {
+            return split;
+        }
+
+        @Override
+        public int getUnitCount() {
+            return units;
+        }
+
+        @Override
+        public Integer createUnit(int index) {
+            return index;
+        }
+
+        @Override
+        public void close() {
+            onClose.run();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.andresolarte.mesos.framework.input;
+
+import com.andresolarte.mesos.framework.dto.Request;
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.logic.LargestProductFinder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class InputStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsRangesOfAStagedInput() throws IOException {
+        Path file = stage("0123456789\n");
+        assertArrayEquals(new byte[]{3, 4, 5}, InputStore.read(file.toString(), 3, 3));
+        assertArrayEquals(new byte[]{9}, InputStore.read(file.toString(), 9, 1));
+    }
+
+    @Test
+    public void referencesFindTheSameWindowsAsDigits() throws IOException, InterruptedException {
+        Random random = new Random(4);
+        StringBuilder digits = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            digits.append(random.nextInt(10));
+        }
+        Path file = stage(digits.toString());
+        ArrayDigitInput input = new ArrayDigitInput(digits.toString());
+        LargestProductFinder finder = new LargestProductFinder(1);
+        for (int offset = 0; offset < 5000; offset += 1000) {
+            Result fromDigits = finder.process(new Request(input.read(offset, 1000), 13));
+            Result fromReference = finder.process(new Request(file.toString(), offset, 1000, 13));
+            assertEquals(fromDigits.getDigitSequence(), fromReference.getDigitSequence());
+            assertEquals(fromDigits.getTotal(), fromReference.getTotal());
+        }
+    }
+
+    private Path stage(String digits) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, digits.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+}
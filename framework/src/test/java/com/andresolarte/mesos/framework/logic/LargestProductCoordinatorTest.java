@@ -0,0 +1,228 @@
+package com.andresolarte.mesos.framework.logic;
+
+import com.andresolarte.mesos.framework.dto.Request;
+import com.andresolarte.mesos.framework.dto.RequestBatch;
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.input.ArrayDigitInput;
+import com.andresolarte.mesos.framework.job.JobTask;
+import com.andresolarte.mesos.framework.util.DigitProducts;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LargestProductCoordinatorTest {
+    private static final int WINDOW = 4;
+
+    @Test
+    public void bestWindowsDontDependOnThePlan() throws InterruptedException {
+        String digits = input(7);
+        for (int k : new int[]{1, 5}) {
+            List<String> expected = bruteForce(digits, k);
+            for (int cores : new int[]{1, 3, 8, 40}) {
+                for (int requestsPerTask : new int[]{1, 3}) {
+                    assertEquals(k + " best on " + cores + " cores, " + requestsPerTask + " requests per task",
+                            expected, run(digits, k, cores, requestsPerTask));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bestWindowsOfASingleChunk() throws InterruptedException {
+        // The two best windows, and the next two, overlap
+        String digits = input(8);
+        assertEquals(bruteForce(digits, 4), run(digits, 4, 1, 1));
+        assertEquals("9999", run(digits, 4, 1, 1).get(1).split(" ")[1]);
+    }
+
+    @Test
+    public void batchesKeepTheWindowsOfEveryChunk() {
+        Result left = windows(result(72, "89"), result(8, "18"));
+        Result right = windows(result(72, "98"), result(64, "88"));
+        Result combined = LargestProductJob.combine(left, right);
+        // The earlier chunk wins the tie
+        assertEquals(Arrays.asList("89", "98", "88", "18"), sequences(combined.getWindows()));
+
+        Result none = new Result();
+        none.setTotal(0);
+        assertSame(left, LargestProductJob.combine(left, none));
+        assertSame(right, LargestProductJob.combine(none, right));
+
+        // Only the best window was asked for
+        Result best = LargestProductJob.combine(result(8, "18"), result(81, "99"));
+        assertFalse(best.isTopResults());
+        assertEquals("99", best.getDigitSequence());
+    }
+
+    @Test
+    public void inputShorterThanAWindow() throws InterruptedException {
+        LargestProductCoordinator coordinator = new LargestProductCoordinator(WINDOW, 3,
+                new TaskPlanner(1000, 100000, 10), null);
+        coordinator.setupTasks(new ArrayDigitInput("999"));
+        assertEquals(1, coordinator.split(4));
+        coordinator.ingestResult(0, 1, new LargestProductFinder(1).process(coordinator.createRequest(0)));
+        assertTrue(coordinator.isComplete());
+        assertNull(coordinator.getResult().getDigitSequence());
+    }
+
+    @Test
+    public void prunedTasksDontChangeTheBestWindows() throws InterruptedException {
+        // The best windows all come first, and the rest of the input can't reach them
+        Random random = new Random(9);
+        StringBuilder builder = new StringBuilder(input(10).substring(0, 500));
+        for (int i = 0; i < 5000; i++) {
+            builder.append(random.nextInt(5));
+        }
+        String digits = builder.toString();
+        System.setProperty("coordinator.prune", "true");
+        try {
+            for (int k : new int[]{1, 3}) {
+                LargestProductCoordinator coordinator = new LargestProductCoordinator(WINDOW, k,
+                        new TaskPlanner(1000, 100000, 10), null);
+                coordinator.setupTasks(new ArrayDigitInput(digits));
+                int tasks = coordinator.split(8);
+                LargestProductFinder finder = new LargestProductFinder(1);
+                for (int i = 0; i < tasks; i++) {
+                    if (!coordinator.isFinished(i)) {
+                        coordinator.ingestResult(i, 1, finder.process(coordinator.createRequest(i)));
+                    }
+                }
+                assertTrue(coordinator.isComplete());
+                assertTrue(k + " best", coordinator.getPrunedCount() > 0);
+                assertEquals(bruteForce(digits, k), windows(coordinator.getTopResults()));
+            }
+        } finally {
+            System.clearProperty("coordinator.prune");
+        }
+    }
+
+    @Test
+    public void tasksBelowTheFloorAnswerWithNothing() throws InterruptedException {
+        String digits = input(10).substring(0, 500) + repeat("1234", 1000);
+        LargestProductCoordinator coordinator = new LargestProductCoordinator(WINDOW, 3,
+                new TaskPlanner(1000, 100000, 10), null);
+        coordinator.setupTasks(new ArrayDigitInput(digits));
+        int tasks = coordinator.split(8);
+        LargestProductFinder finder = new LargestProductFinder(1);
+        coordinator.ingestResult(0, 1, finder.process(coordinator.createRequest(0)));
+        for (int i = 1; i < tasks; i++) {
+            Request request = coordinator.createRequest(i);
+            assertArrayEquals(DigitProducts.exponents(coordinator.getTopResults().get(2).getDigitSequence()),
+                    request.getFloor());
+            Result result = finder.process(request);
+            assertNull(result.getDigitSequence());
+            coordinator.ingestResult(i, 1, result);
+        }
+        assertTrue(coordinator.isComplete());
+        assertEquals(bruteForce(digits, 3), windows(coordinator.getTopResults()));
+    }
+
+    /**
+     * Runs the job with every result coming in last task first, and returns its best windows.
+     */
+    private static List<String> run(String digits, int k, int cores, int requestsPerTask)
+            throws InterruptedException {
+        LargestProductCoordinator coordinator = new LargestProductCoordinator(WINDOW, k,
+                new TaskPlanner(1000, 100000, 10), null);
+        coordinator.setupTasks(new ArrayDigitInput(digits));
+        int tasks = coordinator.split(cores);
+        for (int last = tasks - 1; last >= 0; last -= requestsPerTask) {
+            int first = Math.max(0, last - requestsPerTask + 1);
+            List<Request> requests = new ArrayList<>();
+            for (int i = first; i <= last; i++) {
+                requests.add(coordinator.createRequest(i));
+            }
+            Object payload = requests.size() == 1 ? requests.get(0) : new RequestBatch(requests);
+            Result result = (Result) JobTask.process(LargestProductJob.NAME, 1, payload);
+            assertTrue(coordinator.ingestResult(first, requests.size(), result));
+        }
+        assertTrue(coordinator.isComplete());
+        return windows(coordinator.getTopResults());
+    }
+
+    private static List<String> windows(List<Result> topResults) {
+        List<String> windows = new ArrayList<>();
+        for (Result window : topResults) {
+            windows.add(window.getProduct() + " " + window.getDigitSequence());
+        }
+        return windows;
+    }
+
+    /**
+     * Random digits without a 9, but for a run of five of them.
+     */
+    private static String input(long seed) {
+        Random random = new Random(seed);
+        StringBuilder digits = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            digits.append(random.nextInt(9));
+        }
+        digits.replace(1234, 1239, "99999");
+        return digits.toString();
+    }
+
+    /**
+     * The best k windows, ranked by product and then by position.
+     */
+    private static List<String> bruteForce(String digits, int k) {
+        List<Integer> starts = new ArrayList<>();
+        for (int start = 0; start + WINDOW <= digits.length(); start++) {
+            starts.add(start);
+        }
+        starts.sort(Comparator.comparing((Integer start) -> product(digits.substring(start, start + WINDOW)))
+                .reversed().thenComparing(start -> start));
+        List<String> windows = new ArrayList<>();
+        for (int start : starts.subList(0, k)) {
+            String window = digits.substring(start, start + WINDOW);
+            windows.add(product(window) + " " + window);
+        }
+        return windows;
+    }
+
+    private static BigInteger product(String window) {
+        BigInteger product = BigInteger.ONE;
+        for (char digit : window.toCharArray()) {
+            product = product.multiply(BigInteger.valueOf(digit - '0'));
+        }
+        return product;
+    }
+
+    private static String repeat(String part, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(part);
+        }
+        return builder.toString();
+    }
+
+    private static List<String> sequences(List<Result> windows) {
+        List<String> sequences = new ArrayList<>();
+        for (Result window : windows) {
+            sequences.add(window.getDigitSequence());
+        }
+        return sequences;
+    }
+
+    private static Result windows(Result... windows) {
+        return Result.ofWindows(Arrays.asList(windows));
+    }
+
+    private static Result result(long total, String digits) {
+        Result result = new Result();
+        result.setTotal(total);
+        result.setDigitSequence(digits);
+        return result;
+    }
+}
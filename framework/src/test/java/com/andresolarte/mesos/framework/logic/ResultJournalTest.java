@@ -0,0 +1,232 @@
+package com.andresolarte.mesos.framework.logic;
+
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.input.ArrayDigitInput;
+import com.andresolarte.mesos.framework.input.DigitInput;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResultJournalTest {
+    private static final TaskPlan PLAN = new TaskPlan(1000, 13, 112, 10);
+    private static final long FINGERPRINT = 42;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+    //The size of the journal after each of its records
+    private final long[] ends = new long[3];
+
+    @Before
+    public void writeJournal() throws IOException {
+        path = folder.getRoot().toPath().resolve("job.journal");
+        ResultJournal.create(path, PLAN, FINGERPRINT, 1).close();
+        for (int task = 0; task < ends.length; task++) {
+            try (ResultJournal journal = ResultJournal.append(path, PLAN, FINGERPRINT, 1)) {
+                journal.append(task, 1, result(10 + task, "2" + (5 + task)));
+            }
+            ends[task] = Files.size(path);
+        }
+    }
+
+    @Test
+    public void replaysEveryRecord() throws IOException {
+        ResultReducer reducer = new ResultReducer(PLAN.getTaskCount(), 1);
+        assertEquals(3, ResultJournal.replay(path, reducer));
+        assertEquals(3, reducer.getFinishedCount());
+        assertEquals(12, reducer.getBest().getTotal());
+        assertEquals(PLAN.getTaskCount(), ResultJournal.readPlan(path, 1000, 13, FINGERPRINT).getTaskCount());
+    }
+
+    @Test
+    public void dropsATruncatedRecord() throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(ends[2] - 3);
+        }
+        ResultReducer reducer = new ResultReducer(PLAN.getTaskCount(), 1);
+        assertEquals(2, ResultJournal.replay(path, reducer));
+        assertTrue(reducer.isFinished(1));
+        assertFalse(reducer.isFinished(2));
+        assertEquals(11, reducer.getBest().getTotal());
+    }
+
+    @Test
+    public void stopsAtACorruptRecord() throws IOException {
+        corrupt(ends[0] + 2);
+        ResultReducer reducer = new ResultReducer(PLAN.getTaskCount(), 1);
+        assertEquals(1, ResultJournal.replay(path, reducer));
+        assertTrue(reducer.isFinished(0));
+        assertFalse(reducer.isFinished(1));
+        assertFalse(reducer.isFinished(2));
+    }
+
+    @Test
+    public void appendsAfterTheLastGoodRecord() throws IOException {
+        corrupt(ends[1] + 2);
+        try (ResultJournal journal = ResultJournal.append(path, PLAN, FINGERPRINT, 1)) {
+            journal.append(7, 1, result(81, "99"));
+        }
+        ResultReducer reducer = new ResultReducer(PLAN.getTaskCount(), 1);
+        assertEquals(3, ResultJournal.replay(path, reducer));
+        assertFalse(reducer.isFinished(2));
+        assertTrue(reducer.isFinished(7));
+        assertEquals(81, reducer.getBest().getTotal());
+    }
+
+    @Test
+    public void snapshotKeepsTheBestWindowsOfEveryTask() throws IOException {
+        Path topPath = folder.getRoot().toPath().resolve("top.journal");
+        try (ResultJournal journal = ResultJournal.create(topPath, PLAN, FINGERPRINT, 3)) {
+            journal.append(4, 1, Result.ofWindows(Arrays.asList(result(81, "99"), result(64, "88"),
+                    result(63, "79"))));
+            journal.append(2, 1, Result.ofWindows(Arrays.asList(result(72, "89"), result(8, "18"))));
+            journal.append(6, 1, Result.ofWindows(Arrays.asList(result(64, "88"))));
+            journal.snapshot();
+            journal.append(7, 1, Result.ofWindows(Arrays.asList(result(63, "97"))));
+        }
+        ResultReducer reducer = new ResultReducer(PLAN.getTaskCount(), 3);
+        ResultJournal.replay(topPath, reducer);
+        List<ResultReducer.RankedResult> top = reducer.getTopRanked();
+        assertEquals(Arrays.asList(4, 2, 4), Arrays.asList(top.get(0).getTask(), top.get(1).getTask(),
+                top.get(2).getTask()));
+        assertEquals(Arrays.asList(0, 0, 1), Arrays.asList(top.get(0).getRank(), top.get(1).getRank(),
+                top.get(2).getRank()));
+        for (int task : new int[]{2, 4, 6, 7}) {
+            assertTrue(reducer.isFinished(task));
+        }
+    }
+
+    @Test
+    public void isOnlyReusedForTheSameInput() throws IOException {
+        assertNull(ResultJournal.readPlan(path, 1000, 13, FINGERPRINT + 1));
+        assertNull(ResultJournal.readPlan(path, 1000, 12, FINGERPRINT));
+        assertNull(ResultJournal.readPlan(path, 1001, 13, FINGERPRINT));
+    }
+
+    @Test
+    public void fingerprintCoversTheWholeInput() {
+        StringBuilder digits = new StringBuilder();
+        for (int i = 0; i < 3 << 20; i++) {
+            digits.append(i % 10);
+        }
+        long fingerprint = ResultJournal.fingerprint(new ArrayDigitInput(digits.toString()));
+        digits.setCharAt(digits.length() - 1, '0');
+        assertNotEquals(fingerprint, ResultJournal.fingerprint(new ArrayDigitInput(digits.toString())));
+    }
+
+    @Test
+    public void coordinatorFingerprintsTheInputOnce() throws IOException {
+        CountingInput input = new CountingInput(1000);
+        LargestProductCoordinator coordinator = coordinator(input, folder.getRoot().toPath().resolve("new.journal"));
+        // Nothing to resume, so nothing to hash yet
+        assertFalse(coordinator.recover());
+        assertEquals(0, input.wholeReads);
+        coordinator.split(4);
+        assertEquals(1, input.wholeReads);
+        coordinator.close();
+
+        // A journal of another job over the same input is hashed against, and the hash is then reused
+        input = new CountingInput(1000);
+        coordinator = coordinator(input, path);
+        assertFalse(coordinator.recover());
+        coordinator.split(4);
+        assertEquals(1, input.wholeReads);
+        coordinator.close();
+    }
+
+    @Test
+    public void coordinatorKeepsItsJournalWhenClosed() throws IOException, InterruptedException {
+        Path journal = folder.getRoot().toPath().resolve("closed.journal");
+        LargestProductCoordinator coordinator = coordinator(new CountingInput(1000), journal);
+        coordinator.split(4);
+        coordinator.ingestResult(1, 1, result(6561, "9999"));
+        // As when the job is given up on, before it completes
+        coordinator.close();
+        assertFalse(journalWriterRunning());
+
+        ResultReducer reducer = new ResultReducer(coordinator.getTaskPlan().getTaskCount(), 1);
+        assertEquals(1, ResultJournal.replay(journal, reducer));
+        assertTrue(reducer.isFinished(1));
+    }
+
+    private static boolean journalWriterRunning() throws InterruptedException {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            // A closed journal's writer may still be on its way out
+            if (thread.getName().equals("journal-writer")) {
+                thread.join(1000);
+                if (thread.isAlive()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static LargestProductCoordinator coordinator(DigitInput input, Path journal) {
+        LargestProductCoordinator coordinator =
+                new LargestProductCoordinator(4, 1, new TaskPlanner(1000, 100000, 10), journal.toString());
+        coordinator.setupTasks(input);
+        return coordinator;
+    }
+
+    private void corrupt(long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, position);
+            value.put(0, (byte) ~value.get(0));
+            value.rewind();
+            channel.write(value, position);
+        }
+    }
+
+    private static Result result(long total, String digits) {
+        Result result = new Result();
+        result.setTotal(total);
+        result.setDigitSequence(digits);
+        return result;
+    }
+
+    //Counts how often the input is read as a whole, which only hashing it does
+    private static class CountingInput implements DigitInput {
+        private final ArrayDigitInput digits;
+        private int wholeReads;
+
+        CountingInput(int length) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                builder.append(i % 9 + 1);
+            }
+            digits = new ArrayDigitInput(builder.toString());
+        }
+
+        @Override
+        public long length() {
+            return digits.length();
+        }
+
+        @Override
+        public byte[] read(long offset, int length) {
+            if (offset == 0 && length == digits.length()) {
+                wholeReads++;
+            }
+            return digits.read(offset, length);
+        }
+    }
+}
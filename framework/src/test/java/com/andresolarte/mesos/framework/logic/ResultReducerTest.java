@@ -0,0 +1,113 @@
+package com.andresolarte.mesos.framework.logic;
+
+import com.andresolarte.mesos.framework.dto.Result;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResultReducerTest {
+
+    @Test
+    public void tiesGoToTheFirstTaskWhateverTheOrder() {
+        Result early = result(81, "99");
+        Result late = result(81, "99");
+
+        ResultReducer lateFirst = new ResultReducer(10, 1);
+        lateFirst.ingest(7, 1, late);
+        lateFirst.ingest(2, 1, early);
+        assertSame(early, lateFirst.getBest());
+
+        ResultReducer earlyFirst = new ResultReducer(10, 1);
+        earlyFirst.ingest(2, 1, early);
+        earlyFirst.ingest(7, 1, late);
+        assertSame(early, earlyFirst.getBest());
+    }
+
+    @Test
+    public void tiesOfDifferentDigitsAreRankedByTask() {
+        Result nines = result(18, "29");
+        Result sixes = result(18, "36");
+        ResultReducer reducer = new ResultReducer(10, 3);
+        reducer.ingest(5, 1, sixes);
+        reducer.ingest(1, 1, result(2, "12"));
+        reducer.ingest(3, 1, nines);
+
+        List<ResultReducer.RankedResult> top = reducer.getTopRanked();
+        assertEquals(Arrays.asList(3, 5, 1), Arrays.asList(top.get(0).getTask(), top.get(1).getTask(),
+                top.get(2).getTask()));
+        assertSame(nines, reducer.getBest());
+    }
+
+    @Test
+    public void keepsTheBestK() {
+        ResultReducer reducer = new ResultReducer(10, 2);
+        reducer.ingest(0, 1, result(10, "25"));
+        assertNull(reducer.getThreshold());
+        reducer.ingest(1, 1, result(30, "56"));
+        reducer.ingest(2, 1, result(20, "45"));
+        reducer.ingest(3, 1, result(5, "15"));
+
+        assertEquals(Arrays.asList(30L, 20L), Arrays.asList(reducer.getTop().get(0).getTotal(),
+                reducer.getTop().get(1).getTotal()));
+        assertEquals(20, reducer.getThreshold().getTotal());
+    }
+
+    @Test
+    public void dropsDuplicates() {
+        ResultReducer reducer = new ResultReducer(4, 1);
+        assertTrue(reducer.ingest(0, 2, result(10, "25")));
+        assertFalse(reducer.ingest(1, 1, result(81, "99")));
+        assertEquals(10, reducer.getBest().getTotal());
+        assertEquals(2, reducer.getFinishedCount());
+
+        assertTrue(reducer.ingest(1, 3, result(12, "34")));
+        assertEquals(4, reducer.getFinishedCount());
+        assertTrue(reducer.isComplete());
+    }
+
+    @Test
+    public void ranksEveryWindowOfATask() {
+        ResultReducer reducer = new ResultReducer(10, 3);
+        reducer.ingest(6, 1, windows(result(64, "88")));
+        reducer.ingest(4, 1, windows(result(81, "99"), result(64, "88"), result(63, "79")));
+        reducer.ingest(2, 1, windows(result(72, "89"), result(8, "18")));
+
+        List<ResultReducer.RankedResult> top = reducer.getTopRanked();
+        assertEquals(Arrays.asList(81L, 72L, 64L), Arrays.asList(top.get(0).getResult().getTotal(),
+                top.get(1).getResult().getTotal(), top.get(2).getResult().getTotal()));
+        // Two of the best windows from the same task, the second one winning a tie with a later task
+        assertEquals(Arrays.asList(4, 2, 4), Arrays.asList(top.get(0).getTask(), top.get(1).getTask(),
+                top.get(2).getTask()));
+        assertEquals(Arrays.asList(0, 0, 1), Arrays.asList(top.get(0).getRank(), top.get(1).getRank(),
+                top.get(2).getRank()));
+        assertEquals("99", reducer.getBest().getDigitSequence());
+        assertTrue(reducer.getBest().getRunnersUp().isEmpty());
+        assertEquals(64, reducer.getThreshold().getTotal());
+    }
+
+    @Test
+    public void tiesWithinATaskKeepTheirRank() {
+        ResultReducer reducer = new ResultReducer(10, 2);
+        reducer.ingest(3, 1, windows(result(56, "78"), result(56, "87")));
+        assertEquals("78", reducer.getTop().get(0).getDigitSequence());
+        assertEquals("87", reducer.getTop().get(1).getDigitSequence());
+    }
+
+    private static Result windows(Result... windows) {
+        return Result.ofWindows(Arrays.asList(windows));
+    }
+
+    private static Result result(long total, String digits) {
+        Result result = new Result();
+        result.setTotal(total);
+        result.setDigitSequence(digits);
+        return result;
+    }
+}
@@ -0,0 +1,268 @@
+package com.andresolarte.mesos.framework.logic;
+
+import com.andresolarte.mesos.framework.dto.Request;
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.util.DigitProducts;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WindowProductKernelTest {
+
+    @Test
+    public void matchesBruteForceOnRandomDigits() {
+        Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            // From no zeros at all to mostly zeros, and from small to wide windows
+            int zeroPercent = random.nextInt(5) * 20;
+            byte[] digits = digits(random, 1 + random.nextInt(300), zeroPercent);
+            int window = 1 + random.nextInt(Math.min(digits.length, 30));
+            assertBest(digits, window);
+        }
+    }
+
+    @Test
+    public void onlyZeros() {
+        assertBest(new byte[40], 5);
+        assertBest(new byte[40], 25);
+    }
+
+    @Test
+    public void tiesGoToTheFirstWindow() {
+        assertEquals(0, WindowProductKernel.findBestWindow(digits("91190919"), 0, 7, 2));
+        assertEquals(1, WindowProductKernel.findBestWindow(digits("0366363"), 0, 5, 3));
+        // 2 * 9 and 3 * 6 are the same product with different digits
+        assertEquals(0, WindowProductKernel.findBestWindow(digits("29136"), 0, 4, 2));
+        byte[] wide = digits("1" + repeat("29", 12) + "1" + repeat("36", 12));
+        assertBest(wide, 24);
+        assertEquals(1, WindowProductKernel.findBestWindow(wide, 0, wide.length - 23, 24));
+    }
+
+    @Test
+    public void windowsWiderThanALong() {
+        Random random = new Random(2);
+        for (int window : new int[]{19, 20, 21, 40, 64}) {
+            assertBest(digits(random, 500, 0), window);
+            assertBest(digits(random, 500, 3), window);
+        }
+    }
+
+    @Test
+    public void lastWindow() {
+        assertBest(digits("1111111199"), 2);
+        assertBest(digits("1111111111111111111111111111111199"), 25);
+        assertBest(digits("0987"), 3);
+    }
+
+    @Test
+    public void finderScansTheLastWindowOfAChunk() throws InterruptedException {
+        Result result = new LargestProductFinder(1).process(new Request(digits("31111111111199"), 2));
+        assertEquals(81, result.getTotal());
+        assertEquals("99", result.getDigitSequence());
+
+        Random random = new Random(3);
+        for (int round = 0; round < 50; round++) {
+            byte[] digits = digits(random, 20 + random.nextInt(200), 10);
+            int window = 1 + random.nextInt(Math.min(digits.length, 30));
+            result = new LargestProductFinder(1).process(new Request(digits, window));
+            assertEquals(bruteForceProduct(digits, window), result.getProduct());
+        }
+    }
+
+    @Test
+    public void finderFindsNothingInAChunkShorterThanAWindow() throws InterruptedException {
+        Result result = new LargestProductFinder(1).process(new Request(digits("999"), 4));
+        assertEquals(0, result.getTotal());
+        assertNull(result.getDigitSequence());
+    }
+
+    @Test
+    public void bestWindowsMatchBruteForce() {
+        Random random = new Random(5);
+        for (int round = 0; round < 300; round++) {
+            int zeroPercent = random.nextInt(5) * 20;
+            byte[] digits = digits(random, 1 + random.nextInt(200), zeroPercent);
+            int window = 1 + random.nextInt(Math.min(digits.length, 30));
+            int windows = digits.length - window + 1;
+            int k = 2 + random.nextInt(6);
+            int[] expected = bruteForceTop(digits, window, k);
+            assertArrayEquals(expected, WindowProductKernel.findBestWindows(digits, 0, windows, window, k));
+            assertArrayEquals(expected, ParallelWindowScan.findBestWindows(digits, 0, windows, window, k, 3));
+
+            // The best windows of two ranges merge into the best of both
+            int split = random.nextInt(windows + 1);
+            int[] merged = WindowProductKernel.merge(digits, window,
+                    WindowProductKernel.findBestWindows(digits, 0, split, window, k),
+                    WindowProductKernel.findBestWindows(digits, split, windows, window, k), k);
+            assertArrayEquals(expected, merged);
+        }
+    }
+
+    @Test
+    public void bestWindowsTieInInputOrder() {
+        // 9 * 2, 2 * 9 and 3 * 6 all make 18
+        assertArrayEquals(new int[]{1, 2, 5}, WindowProductKernel.findBestWindows(digits("192913611"), 0, 8, 2, 3));
+        // Only two windows without a zero, then the first ones with one
+        assertArrayEquals(new int[]{3, 0, 1, 2}, WindowProductKernel.findBestWindows(digits("13049"), 0, 4, 2, 4));
+        assertArrayEquals(new int[]{0, 1}, WindowProductKernel.findBestWindows(digits("00000"), 0, 4, 2, 2));
+    }
+
+    @Test
+    public void finderAnswersWithTheBestWindowsOfItsChunk() throws InterruptedException {
+        Random random = new Random(6);
+        for (int round = 0; round < 50; round++) {
+            byte[] digits = digits(random, 20 + random.nextInt(200), 10);
+            int window = 1 + random.nextInt(Math.min(digits.length, 30));
+            int k = 2 + random.nextInt(5);
+            Request request = new Request(digits, window);
+            request.setTopResults(k);
+            Result result = new LargestProductFinder(1).process(request);
+            assertTrue(result.isTopResults());
+            int[] expected = bruteForceTop(digits, window, k);
+            assertEquals(expected.length, result.getWindows().size());
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(product(digits, expected[i], window), result.getWindows().get(i).getProduct());
+                assertEquals(sequence(digits, expected[i], window), result.getWindows().get(i).getDigitSequence());
+            }
+        }
+        assertFalse(new LargestProductFinder(1).process(new Request(digits("1234"), 2)).isTopResults());
+    }
+
+    @Test
+    public void finderSkipsChunksBelowTheFloor() throws InterruptedException {
+        Request request = new Request(digits("1111122222"), 3);
+        request.setFloor(DigitProducts.exponents("999"));
+        Result result = new LargestProductFinder(1).process(request);
+        assertEquals(0, result.getTotal());
+        assertNull(result.getDigitSequence());
+
+        request = new Request(digits("1111122222"), 3);
+        request.setFloor(DigitProducts.exponents("122"));
+        result = new LargestProductFinder(1).process(request);
+        assertEquals(8, result.getTotal());
+        assertEquals("222", result.getDigitSequence());
+    }
+
+    @Test
+    public void finderOnlyReportsWindowsReachingTheFloorOnceItSkipped() throws InterruptedException {
+        // Three blocks: the first one holds a 99, the others only ones. The second is scanned before the next
+        // check, which skips the third as it can't reach the floor
+        byte[] digits = new byte[(2 << 20) + 1000];
+        Arrays.fill(digits, (byte) 1);
+        digits[500] = 9;
+        digits[501] = 9;
+        Request request = new Request(digits, 2);
+        request.setTopResults(3);
+        request.setFloor(DigitProducts.exponents("88"));
+        Result result = new LargestProductFinder(1).process(request);
+        // 19 and 91 are the next best windows of the first block, but ones that were skipped may tie them
+        assertTrue(result.isTopResults());
+        assertEquals("99", result.getDigitSequence());
+        assertTrue(result.getRunnersUp().isEmpty());
+
+        // Without a floor, nothing is skipped
+        request = new Request(digits, 2);
+        request.setTopResults(3);
+        assertEquals(Arrays.asList("99", "19", "91"), sequences(new LargestProductFinder(1).process(request)));
+    }
+
+    private static List<String> sequences(Result result) {
+        List<String> sequences = new ArrayList<>();
+        for (Result window : result.getWindows()) {
+            sequences.add(window.getDigitSequence());
+        }
+        return sequences;
+    }
+
+    private static void assertBest(byte[] digits, int window) {
+        int windows = digits.length - window + 1;
+        int expected = bruteForce(digits, window);
+        int actual = WindowProductKernel.findBestWindow(digits, 0, windows, window);
+        assertEquals("Best window of " + window + " digits", expected, actual);
+    }
+
+    private static int bruteForce(byte[] digits, int window) {
+        int best = 0;
+        BigInteger bestProduct = product(digits, 0, window);
+        for (int start = 1; start + window <= digits.length; start++) {
+            BigInteger product = product(digits, start, window);
+            if (product.compareTo(bestProduct) > 0) {
+                best = start;
+                bestProduct = product;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The starts of the best k windows, ranked by product and then by start.
+     */
+    private static int[] bruteForceTop(byte[] digits, int window, int k) {
+        List<Integer> starts = new ArrayList<>();
+        for (int start = 0; start + window <= digits.length; start++) {
+            starts.add(start);
+        }
+        starts.sort(Comparator.comparing((Integer start) -> product(digits, start, window)).reversed()
+                .thenComparing(start -> start));
+        int[] top = new int[Math.min(k, starts.size())];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = starts.get(i);
+        }
+        return top;
+    }
+
+    private static String sequence(byte[] digits, int start, int window) {
+        StringBuilder sequence = new StringBuilder();
+        for (int i = start; i < start + window; i++) {
+            sequence.append(digits[i]);
+        }
+        return sequence.toString();
+    }
+
+    private static BigInteger bruteForceProduct(byte[] digits, int window) {
+        return product(digits, bruteForce(digits, window), window);
+    }
+
+    private static BigInteger product(byte[] digits, int start, int window) {
+        BigInteger product = BigInteger.ONE;
+        for (int i = start; i < start + window; i++) {
+            product = product.multiply(BigInteger.valueOf(digits[i]));
+        }
+        return product;
+    }
+
+    private static byte[] digits(Random random, int length, int zeroPercent) {
+        byte[] digits = new byte[length];
+        for (int i = 0; i < length; i++) {
+            digits[i] = (byte) (random.nextInt(100) < zeroPercent ? 0 : 1 + random.nextInt(9));
+        }
+        return digits;
+    }
+
+    private static byte[] digits(String sequence) {
+        byte[] digits = new byte[sequence.length()];
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = (byte) (sequence.charAt(i) - '0');
+        }
+        return digits;
+    }
+
+    private static String repeat(String part, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(part);
+        }
+        return builder.toString();
+    }
+}
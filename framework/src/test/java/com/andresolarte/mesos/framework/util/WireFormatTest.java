@@ -0,0 +1,193 @@
+package com.andresolarte.mesos.framework.util;
+
+import com.andresolarte.mesos.framework.dto.Request;
+import com.andresolarte.mesos.framework.dto.RequestBatch;
+import com.andresolarte.mesos.framework.dto.Result;
+import com.andresolarte.mesos.framework.dto.ResultMessage;
+import com.andresolarte.mesos.framework.dto.WorkMessage;
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WireFormatTest {
+
+    @Test
+    public void requestWithOddNumberOfDigits() {
+        Request request = roundTrip(new Request(new byte[]{7, 3, 0, 9, 1}, 2));
+        assertFalse(request.isReference());
+        assertArrayEquals(new byte[]{7, 3, 0, 9, 1}, request.getDigitSequence());
+        assertEquals(2, request.getNumberOfDigits());
+        assertNull(request.getFloor());
+    }
+
+    @Test
+    public void requestWithFloor() {
+        Request request = new Request(new byte[]{9, 8, 7, 6}, 3);
+        request.setFloor(new int[]{0, 3, 200, 1, 0});
+        ByteString encoded = ByteStringUtils.toByteString(request);
+        assertEquals(WireFormat.TYPE_REQUEST | WireFormat.FLOOR_FLAG, encoded.byteAt(1) & 0xFF);
+        Request decoded = roundTrip(request);
+        assertArrayEquals(new byte[]{9, 8, 7, 6}, decoded.getDigitSequence());
+        assertArrayEquals(new int[]{0, 3, 200, 1, 0}, decoded.getFloor());
+
+        Request reference = new Request("input", 42, 100, 13);
+        reference.setFloor(new int[]{0, 1, 2, 3, 4});
+        decoded = roundTrip(reference);
+        assertEquals("input", decoded.getInputId());
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, decoded.getFloor());
+    }
+
+    @Test
+    public void batch() {
+        RequestBatch batch = roundTrip(new RequestBatch(Arrays.asList(
+                new Request(new byte[]{1, 2, 3}, 2), new Request(new byte[]{9, 8}, 2))));
+        assertEquals(2, batch.getRequests().size());
+        assertArrayEquals(new byte[]{1, 2, 3}, batch.getRequests().get(0).getDigitSequence());
+        assertArrayEquals(new byte[]{9, 8}, batch.getRequests().get(1).getDigitSequence());
+    }
+
+    @Test
+    public void reference() {
+        Request decoded = roundTrip(new Request("input-é", 5000000000L, 1 << 20, 13));
+        assertTrue(decoded.isReference());
+        assertNull(decoded.getDigitSequence());
+        assertEquals("input-é", decoded.getInputId());
+        assertEquals(5000000000L, decoded.getOffset());
+        assertEquals(1 << 20, decoded.getLength());
+        assertEquals(13, decoded.getNumberOfDigits());
+    }
+
+    @Test
+    public void batchMixingDigitsAndReferences() {
+        RequestBatch batch = roundTrip(new RequestBatch(Arrays.asList(
+                new Request(new byte[]{1, 2, 3}, 2), new Request("input", 42, 100, 2))));
+        assertArrayEquals(new byte[]{1, 2, 3}, batch.getRequests().get(0).getDigitSequence());
+        Request reference = batch.getRequests().get(1);
+        assertEquals("input", reference.getInputId());
+        assertEquals(42, reference.getOffset());
+        assertEquals(100, reference.getLength());
+    }
+
+    @Test
+    public void results() {
+        Result result = new Result();
+        result.setTotal(5832);
+        result.setDigitSequence("9899");
+        Result decoded = roundTrip(result);
+        assertEquals(5832, decoded.getTotal());
+        assertEquals("9899", decoded.getDigitSequence());
+
+        Result overflow = new Result();
+        overflow.setTotal(Result.OVERFLOW);
+        overflow.setDigitSequence("99999999999999999999999");
+        decoded = roundTrip(overflow);
+        assertTrue(decoded.isOverflow());
+        assertEquals(overflow.getProduct(), decoded.getProduct());
+
+        decoded = roundTrip(new Result());
+        assertEquals(1, decoded.getTotal());
+        assertNull(decoded.getDigitSequence());
+    }
+
+    @Test
+    public void workMessage() {
+        byte[] payload = ByteStringUtils.toByteString(new Request(new byte[]{4, 5}, 1)).toByteArray();
+        WorkMessage work = decode(new WorkMessage("attempt-1", null, 4, payload), WorkMessage.class);
+        assertEquals("attempt-1", work.getAttemptId());
+        assertNull(work.getJobName());
+        assertEquals(4, work.getParallelism());
+        assertArrayEquals(payload, work.getPayload());
+
+        work = decode(new WorkMessage("attempt-2", "job", 1, new byte[0]), WorkMessage.class);
+        assertEquals("job", work.getJobName());
+        assertArrayEquals(new byte[0], work.getPayload());
+    }
+
+    @Test
+    public void resultMessages() {
+        ResultMessage finished = decode(ResultMessage.finished("attempt-1", new byte[]{1, 2, 3}), ResultMessage.class);
+        assertEquals("attempt-1", finished.getAttemptId());
+        assertFalse(finished.isFailed());
+        assertArrayEquals(new byte[]{1, 2, 3}, finished.getResult());
+
+        ResultMessage failed = decode(ResultMessage.failed("attempt-2", "Out of memory"), ResultMessage.class);
+        assertTrue(failed.isFailed());
+        assertNull(failed.getResult());
+        assertEquals("Out of memory", failed.getError());
+    }
+
+    @Test
+    public void undecodableMessages() {
+        byte[] work = ByteStringUtils.toMessageBytes(new WorkMessage("attempt-1", "job", 1, new byte[]{1, 2, 3}));
+        byte[] truncated = Arrays.copyOf(work, work.length - 2);
+        assertNull(ByteStringUtils.fromMessageBytes(truncated, WorkMessage.class));
+        assertEquals("attempt-1", ByteStringUtils.attemptIdOf(truncated));
+
+        // A message of the other side
+        assertNull(ByteStringUtils.fromMessageBytes(work, ResultMessage.class));
+        byte[] garbage = {(byte) WireFormat.FORMAT_V1, 42, 7};
+        assertNull(ByteStringUtils.fromMessageBytes(garbage, WorkMessage.class));
+        assertNull(ByteStringUtils.attemptIdOf(garbage));
+        assertNull(ByteStringUtils.fromMessageBytes(new byte[]{(byte) 0xAC, 0}, WorkMessage.class));
+        assertNull(ByteStringUtils.attemptIdOf(new byte[0]));
+    }
+
+    @Test
+    public void topResults() {
+        Request request = new Request(new byte[]{1, 2, 3}, 2);
+        request.setTopResults(5);
+        ByteString encoded = ByteStringUtils.toByteString(request);
+        assertEquals(WireFormat.TYPE_REQUEST | WireFormat.TOP_FLAG, encoded.byteAt(1) & 0xFF);
+        assertEquals(5, roundTrip(request).getTopResults());
+        assertEquals(1, roundTrip(new Request("input", 0, 10, 2)).getTopResults());
+
+        Result best = new Result();
+        best.setTotal(81);
+        best.setDigitSequence("99");
+        Result overflow = new Result();
+        overflow.setTotal(Result.OVERFLOW);
+        overflow.setDigitSequence("8888888888888888888888");
+        Result decoded = roundTrip(Result.ofWindows(Arrays.asList(best, overflow)));
+        assertTrue(decoded.isTopResults());
+        assertEquals("99", decoded.getDigitSequence());
+        assertEquals(1, decoded.getRunnersUp().size());
+        assertEquals(overflow.getProduct(), decoded.getRunnersUp().get(0).getProduct());
+
+        // Asked for more windows than the digits hold
+        decoded = roundTrip(Result.ofWindows(Arrays.asList(best)));
+        assertTrue(decoded.isTopResults());
+        assertTrue(decoded.getRunnersUp().isEmpty());
+        assertFalse(roundTrip(best).isTopResults());
+    }
+
+    @Test
+    public void fallsBackToJavaSerialization() {
+        // Not a digit, so it can't be packed
+        Request request = new Request(new byte[]{1, 12}, 1);
+        ByteString encoded = ByteStringUtils.toByteString(request);
+        assertEquals(WireFormat.JAVA_SERIALIZATION, encoded.byteAt(0) & 0xFF);
+        Request decoded = ByteStringUtils.fromByteString(encoded);
+        assertArrayEquals(new byte[]{1, 12}, decoded.getDigitSequence());
+    }
+
+    private static <T extends Serializable> T roundTrip(T value) {
+        ByteString encoded = ByteStringUtils.toByteString(value);
+        assertEquals(WireFormat.FORMAT_V1, encoded.byteAt(0) & 0xFF);
+        return ByteStringUtils.fromByteString(encoded);
+    }
+
+    private static <T> T decode(Serializable message, Class<T> type) {
+        T decoded = ByteStringUtils.fromMessageBytes(ByteStringUtils.toMessageBytes(message), type);
+        assertNotNull(decoded);
+        return decoded;
+    }
+}